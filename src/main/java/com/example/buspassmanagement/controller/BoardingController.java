@@ -0,0 +1,92 @@
+package com.example.buspassmanagement.controller;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.buspassmanagement.service.BoardingEventService;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Receives boarding taps from the scanners on the buses.
+ * Taps are queued and written in the background, so these calls return immediately.
+ */
+@RestController
+public class BoardingController {
+
+    @Autowired
+    private BoardingEventService boardingEventService;
+
+    /**
+     * ADMIN: Record a single boarding tap
+     */
+    @PostMapping("/boarding/taps")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<Map<String, Object>> recordTap(@RequestBody TapRequest tap) {
+        return submit(List.of(tap));
+    }
+
+    /**
+     * ADMIN: Record a batch of boarding taps (accepted or refused as a whole)
+     */
+    @PostMapping("/boarding/taps/batch")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<Map<String, Object>> recordTaps(@RequestBody List<TapRequest> taps) {
+        return submit(taps);
+    }
+
+    /**
+     * ADMIN: Queue depth and ingestion counters
+     */
+    @GetMapping("/boarding/stats")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public Map<String, Object> stats() {
+        return boardingEventService.getStats();
+    }
+
+    private ResponseEntity<Map<String, Object>> submit(List<TapRequest> requests) {
+        List<BoardingEventService.Tap> taps = new ArrayList<>(requests.size());
+        for (TapRequest request : requests) {
+            if (request == null || request.getPassId() == null || request.getPassId() <= 0
+                    || request.getBusId() == null || request.getBusId() <= 0) {
+                return ResponseEntity.badRequest().body(Map.of("error", "passId and busId are required"));
+            }
+            LocalDateTime tappedAt = request.getTappedAt() != null ? request.getTappedAt() : LocalDateTime.now();
+            taps.add(new BoardingEventService.Tap(request.getPassId(), request.getBusId(), tappedAt));
+        }
+
+        if (!boardingEventService.submit(taps)) {
+            // Queue full: the scanner keeps the taps and retries
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", "boarding queue is full, retry later"));
+        }
+        return ResponseEntity.accepted().body(Map.of("accepted", taps.size()));
+    }
+
+    /**
+     * Tap request body; tappedAt defaults to the time of receipt
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class TapRequest {
+        private Long passId;
+        private Long busId;
+        private LocalDateTime tappedAt;
+    }
+}
@@ -1,29 +1,42 @@
 package com.example.buspassmanagement.controller;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.Principal;
-import java.util.Base64;
-
-import javax.imageio.ImageIO;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.example.buspassmanagement.model.BusPass;
 import com.example.buspassmanagement.model.User;
+import com.example.buspassmanagement.service.ActivePassIndex;
 import com.example.buspassmanagement.service.BusPassService;
+import com.example.buspassmanagement.service.PassChangeFeedService;
+import com.example.buspassmanagement.service.PassQrCodeService;
+import com.example.buspassmanagement.service.PassQrPrerenderService;
+import com.example.buspassmanagement.service.PassTokenService;
+import com.example.buspassmanagement.service.PassValidityService;
 import com.example.buspassmanagement.service.PaymentService;
 import com.example.buspassmanagement.service.UserService;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
+
+import jakarta.servlet.http.HttpServletResponse;
 
 @Controller
 public class BusPassController {
@@ -37,6 +50,24 @@ public class BusPassController {
     @Autowired
     private BusPassService busPassService;
 
+    @Autowired
+    private PassQrCodeService passQrCodeService;
+
+    @Autowired
+    private PassTokenService passTokenService;
+
+    @Autowired
+    private ActivePassIndex activePassIndex;
+
+    @Autowired
+    private PassQrPrerenderService passQrPrerenderService;
+
+    @Autowired
+    private PassValidityService passValidityService;
+
+    @Autowired
+    private PassChangeFeedService passChangeFeedService;
+
     @GetMapping("/pass")
     @PreAuthorize("hasAuthority('ROLE_USER')")
     public String showBusPass(Model model, Principal principal) {
@@ -49,28 +80,21 @@ public class BusPassController {
             BusPass busPass = busPassService.findByUser(currentUser).orElse(null);
             
             // 3. Determine the pass status
-            String passStatus = (busPass != null && busPass.isActive()) 
-                ? "ACTIVE" : "INACTIVE";
+            String passStatus = busPass == null ? "INACTIVE"
+                : busPass.isActive() ? "ACTIVE"
+                : busPass.isExpired() ? "EXPIRED" : "INACTIVE";
 
             // 4. Get payment status for additional info
             PaymentService.PaymentStatusInfo paymentStatus = paymentService.getPaymentStatus(currentUser);
 
-            // 5. Generate QR Code with user's info
-            String selectedRoute = (busPass != null && busPass.getSelectedRoute() != null) 
-                ? busPass.getSelectedRoute() : "Not Selected";
-            
-            String qrCodeText = "Name: " + currentUser.getName() + 
-                              "\nEmail: " + currentUser.getEmail() + 
-                              "\nRoute: " + selectedRoute +
-                              "\nStatus: " + passStatus;
-            byte[] qrCodeImageBytes = generateQRCodeImage(qrCodeText, 250, 250);
-            String qrCodeBase64 = Base64.getEncoder().encodeToString(qrCodeImageBytes);
+            // 5. QR Code version: the page links to /pass/qr.png, which changes whenever the content does
+            String qrCodeVersion = PassQrCodeService.keyOf(qrText(busPass)).substring(0, 16);
 
             // 6. Add data to the model for the template
             model.addAttribute("user", currentUser);
             model.addAttribute("busPass", busPass);
             model.addAttribute("passStatus", passStatus);
-            model.addAttribute("qrCodeImage", qrCodeBase64);
+            model.addAttribute("qrCodeVersion", qrCodeVersion);
             model.addAttribute("paymentStatus", paymentStatus);
 
             return "bus-pass"; // Renders bus-pass.html
@@ -82,14 +106,129 @@ public class BusPassController {
         }
     }
 
-    private byte[] generateQRCodeImage(String text, int width, int height) throws WriterException, IOException {
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
-        BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, width, height);
+    /**
+     * USER: The pass QR code as a PNG. The strong ETag is the hash of the QR content, so
+     * repeat requests revalidate with a 304 and no body; the page adds the content hash
+     * to the URL, so the browser may also reuse its copy without asking for a day.
+     * Pre-rendered images are copied straight from the store with FileChannel.transferTo;
+     * anything else is rendered (or taken from the in-memory cache).
+     */
+    @GetMapping("/pass/qr.png")
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    public void passQrCode(Principal principal, WebRequest webRequest, HttpServletResponse response) throws Exception {
+        User currentUser = userService.findByEmail(principal.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        BusPass busPass = busPassService.findByUser(currentUser).orElse(null);
+
+        String qrText = qrText(busPass);
+        String key = PassQrCodeService.keyOf(qrText);
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate().getHeaderValue());
+        if (webRequest.checkNotModified("\"" + key + "\"")) {
+            return;
+        }
+        response.setContentType(MediaType.IMAGE_PNG_VALUE);
+
+        Path stored = passQrCodeService.getStoredPng(key);
+        if (stored != null) {
+            try (FileChannel file = FileChannel.open(stored, StandardOpenOption.READ)) {
+                long size = file.size();
+                response.setContentLengthLong(size);
+                WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+                for (long position = 0; position < size; ) {
+                    position += file.transferTo(position, size - position, out);
+                }
+            }
+            return;
+        }
+
+        byte[] png = passQrCodeService.getPng(currentUser.getId(), qrText);
+        response.setContentLength(png.length);
+        response.getOutputStream().write(png);
+    }
+
+    /**
+     * ADMIN: Pre-render the QR codes of all active passes into the on-disk store
+     */
+    @PostMapping("/pass/qr/prerender")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public String prerenderQrCodes(RedirectAttributes redirectAttributes) {
+        try {
+            PassQrPrerenderService.PrerenderResult result = passQrPrerenderService.prerenderActivePasses();
+            redirectAttributes.addFlashAttribute("successMessage",
+                "QR codes pre-rendered for " + result.passes + " active passes (" + result.rendered + " new, "
+                + result.failed + " failed) in " + result.elapsedMillis + " ms, "
+                + result.getPassesPerSecond() + " passes/s.");
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage",
+                "Error pre-rendering QR codes: " + e.getMessage());
+        }
+        return "redirect:/payments";
+    }
+
+    /**
+     * ADMIN: Verify a scanned pass token. Checks the signature, expiry, revocation
+     * and status of the token without touching the database.
+     */
+    @PostMapping("/pass/verify")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @ResponseBody
+    public PassTokenService.Verification verifyPass(@RequestParam("token") String token) {
+        return passTokenService.verify(token);
+    }
+
+    /**
+     * ADMIN: Boarding gate check. The scanned token identifies the pass; the in-memory
+     * active-pass index decides whether it may board a bus on the given route.
+     */
+    @PostMapping("/pass/gate-check")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @ResponseBody
+    public ActivePassIndex.GateCheck gateCheck(@RequestParam("token") String token,
+                                               @RequestParam("route") String route) {
+        return activePassIndex.check(token, route);
+    }
 
-        BufferedImage bufferedImage = MatrixToImageWriter.toBufferedImage(bitMatrix);
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        ImageIO.write(bufferedImage, "PNG", outputStream);
+    /**
+     * ADMIN: Delta sync feed for offline validators: the pass status changes after the
+     * given version, as a gzip'd binary page (see PassChangeFeedService for the format)
+     */
+    @GetMapping("/pass/changes")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public void passChanges(@RequestParam(value = "since", defaultValue = "0") long since,
+                            HttpServletResponse response) throws Exception {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+        passChangeFeedService.writeChangesSince(since, response.getOutputStream());
+    }
+
+    /**
+     * ADMIN: Renew expired, fully paid passes (optionally on one route) for the next term
+     */
+    @PostMapping("/pass/renew")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public String renewPasses(@RequestParam(value = "route", required = false) String route,
+                              @RequestParam("validUntil") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate validUntil,
+                              RedirectAttributes redirectAttributes) {
+        if (validUntil.isBefore(LocalDate.now())) {
+            redirectAttributes.addFlashAttribute("errorMessage", "The new validity must end today or later.");
+            return "redirect:/payments";
+        }
+        try {
+            long renewed = passValidityService.renewExpiredPasses(
+                route == null || route.isBlank() ? null : route, validUntil);
+            redirectAttributes.addFlashAttribute("successMessage",
+                renewed + " expired bus passes renewed until " + validUntil + ".");
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage",
+                "Error renewing bus passes: " + e.getMessage());
+        }
+        return "redirect:/payments";
+    }
 
-        return outputStream.toByteArray();
+    // The QR code carries the signed pass token; users without a pass get a placeholder
+    private String qrText(BusPass busPass) {
+        return busPass != null ? passTokenService.issue(busPass) : "NO-PASS";
     }
 }
@@ -1,10 +1,16 @@
 package com.example.buspassmanagement.controller;
 
 import java.io.IOException;
-import java.util.Base64;
+import java.nio.file.Path;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -13,6 +19,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
@@ -73,8 +80,7 @@ public class DriverController {
         }
 
         try {
-            String base64Image = Base64.getEncoder().encodeToString(imageFile.getBytes());
-            driver.setImage(base64Image);
+            driver.setImageKey(driverService.storePhoto(imageFile));
 
             // *** THE FIX: Part 2 ***
             // If a bus ID was submitted, find the Bus object and assign it to the driver.
@@ -85,6 +91,9 @@ public class DriverController {
             
             driverService.saveDriver(driver);
 
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+            return "redirect:/drivers";
         } catch (IOException e) {
             e.printStackTrace();
             redirectAttributes.addFlashAttribute("errorMessage", "Error processing image file. Please try again.");
@@ -95,6 +104,31 @@ public class DriverController {
         return "redirect:/drivers";
     }
     
+    /**
+     * Driver photo, streamed from the blob store. The key is the hash of the content,
+     * so the response never changes and can be cached for good, but only by the
+     * browser: photos are behind login and must not be kept by shared caches.
+     */
+    @GetMapping("/photos/{key}")
+    public ResponseEntity<Resource> photo(@PathVariable String key,
+                                          @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch)
+            throws IOException {
+        Path photo = driverService.findPhoto(key);
+        if (photo == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String etag = "\"" + key + "\"";
+        CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+        if (etag.equals(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .contentType(driverService.photoContentType(photo))
+                .body(new FileSystemResource(photo));
+    }
+
     @GetMapping("/edit/{id}")
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
     public String showEditForm(@PathVariable Long id, Model model, RedirectAttributes redirectAttributes) {
@@ -126,8 +160,7 @@ public class DriverController {
             
             // Update image if provided
             if (imageFile != null && !imageFile.isEmpty()) {
-                String base64Image = Base64.getEncoder().encodeToString(imageFile.getBytes());
-                existingDriver.setImage(base64Image);
+                existingDriver.setImageKey(driverService.storePhoto(imageFile));
             }
             
             // Update bus assignment
@@ -1,11 +1,26 @@
 package com.example.buspassmanagement.controller;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.nio.file.Path;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
+import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -14,6 +29,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.example.buspassmanagement.model.BusPass;
@@ -22,8 +38,12 @@ import com.example.buspassmanagement.model.Payment.PaymentStatus;
 import com.example.buspassmanagement.model.RouteInstallment;
 import com.example.buspassmanagement.model.User;
 import com.example.buspassmanagement.service.BusPassService;
+import com.example.buspassmanagement.service.IdempotencyService;
 import com.example.buspassmanagement.service.PaymentService;
 import com.example.buspassmanagement.service.RouteInstallmentService;
+import com.example.buspassmanagement.service.SettlementReconciliationService;
+import com.example.buspassmanagement.service.SettlementReconciliationService.MismatchType;
+import com.example.buspassmanagement.service.SettlementReconciliationService.ReconciliationReport;
 import com.example.buspassmanagement.service.UserService;
 
 @Controller
@@ -42,6 +62,12 @@ public class PaymentController {
     @Autowired
     private BusPassService busPassService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private SettlementReconciliationService reconciliationService;
+
     /**
      * Displays payment records.
      * - Admins see all payments.
@@ -49,14 +75,16 @@ public class PaymentController {
      * Includes robust error handling to prevent Whitelabel errors.
      */
     @GetMapping
-    public String listPayments(Model model, Principal principal) {
+    public String listPayments(@RequestParam(value = "after", required = false) Long after,
+                               @RequestParam(value = "size", defaultValue = "" + PaymentService.DEFAULT_PAGE_SIZE) int size,
+                               Model model, Principal principal) {
         if (principal == null) {
             return "redirect:/login";
         }
 
         // Initialize summary variables for the user view.
-        model.addAttribute("totalPaid", 0.0);
-        model.addAttribute("totalPending", 0.0);
+        model.addAttribute("totalPaid", BigDecimal.ZERO);
+        model.addAttribute("totalPending", BigDecimal.ZERO);
 
         try {
             System.out.println("DEBUG: Starting payment page load for user: " + principal.getName());
@@ -68,9 +96,14 @@ public class PaymentController {
 
             List<Payment> payments;
             if (currentUser.getRole() == User.Role.ADMIN) {
-                System.out.println("DEBUG: Loading payments for ADMIN user");
-                payments = paymentService.getAllPayments();
+                System.out.println("DEBUG: Loading payments page for ADMIN user after ID: " + after);
+                PaymentService.PaymentPage page = paymentService.getPaymentsPage(after, size);
+                payments = page.payments;
                 model.addAttribute("payments", payments);
+                model.addAttribute("nextCursor", page.nextCursor);
+                model.addAttribute("pageSize", size);
+                model.addAttribute("isFirstPage", after == null);
+                model.addAttribute("settlementFiles", reconciliationService.listSettlementFiles());
             } else {
                 System.out.println("DEBUG: Loading payments for USER with ID: " + currentUser.getId());
                 // This logic is now fully self-contained for ROLE_USER
@@ -84,17 +117,11 @@ public class PaymentController {
                     payments = Collections.emptyList();
                 }
                 
-                // Using explicit lambdas instead of method references for maximum compatibility and clarity.
-                // This avoids potential runtime issues and makes the calculation more direct.
-                double totalPaid = payments.stream()
-                        .filter(p -> p.getStatus() == PaymentStatus.PAID)
-                        .mapToDouble(p -> p.getAmount())
-                        .sum();
-                
-                double totalPending = payments.stream()
-                        .filter(p -> p.getStatus() == PaymentStatus.PENDING)
-                        .mapToDouble(p -> p.getAmount())
-                        .sum();
+                // Totals are aggregated by the database rather than summed over the list
+                PaymentService.PaymentTotals totals = paymentService.getPaymentTotals(currentUser.getId());
+                BigDecimal totalPaid = totals.getAmount(PaymentStatus.PAID);
+                // Overdue payments are still owed, so they count as pending here
+                BigDecimal totalPending = totals.getOutstanding();
                 
                 System.out.println("DEBUG: Calculated totals - Paid: " + totalPaid + ", Pending: " + totalPending);
                 
@@ -138,8 +165,11 @@ public class PaymentController {
                 return "redirect:/payments";
             }
             
-            paymentService.markAsPaid(id);
-            redirectAttributes.addFlashAttribute("successMessage", "Payment marked as paid!");
+            if (paymentService.markAsPaid(id)) {
+                redirectAttributes.addFlashAttribute("successMessage", "Payment marked as paid!");
+            } else {
+                redirectAttributes.addFlashAttribute("successMessage", "Payment submitted to the gateway. It will be marked as paid once confirmed.");
+            }
 
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", "Error processing payment.");
@@ -148,16 +178,19 @@ public class PaymentController {
     }
 
     /**
-     * USER: Pays the full outstanding balance.
-     * This clears all PENDING payments and creates a single PAID record for the total sum.
+     * USER: Pays the full outstanding balance of the selected route.
+     * This replaces the route's PENDING and OVERDUE payments with a single full payment for the total sum.
      */
     @PostMapping("/pay-full")
     @PreAuthorize("hasAuthority('ROLE_USER')")
     public String payFullFees(Principal principal, RedirectAttributes redirectAttributes) {
         try {
             User currentUser = userService.findByEmail(principal.getName()).orElseThrow();
-            paymentService.payFullAmountForUser(currentUser);
-            redirectAttributes.addFlashAttribute("successMessage", "Successfully paid the full outstanding sum.");
+            if (paymentService.payFullAmountForUser(currentUser)) {
+                redirectAttributes.addFlashAttribute("successMessage", "Successfully paid the full outstanding sum.");
+            } else {
+                redirectAttributes.addFlashAttribute("successMessage", "Payment of the full outstanding sum submitted. It will be confirmed shortly.");
+            }
         } catch (IllegalStateException e) {
             redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
         } catch (Exception e) {
@@ -177,6 +210,99 @@ public class PaymentController {
         return "redirect:/payments";
     }
 
+    /**
+     * ADMIN: Streams the payments ledger as a CSV file.
+     * Rows are written straight from a database cursor, so memory use does not grow with the export size.
+     * Optional filters: route, status and a due-date range.
+     */
+    @GetMapping("/export")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportPayments(
+            @RequestParam(value = "route", required = false) String route,
+            @RequestParam(value = "status", required = false) PaymentStatus status,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        String routeFilter = (route != null && !route.isBlank()) ? route : null;
+
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+            long rows = paymentService.exportPaymentsCsv(routeFilter, status, from, to, writer);
+            System.out.println("Exported " + rows + " payment records to CSV.");
+        };
+
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"payments-" + LocalDate.now() + ".csv\"")
+            .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+            .body(body);
+    }
+
+    /**
+     * ADMIN: Recomputes the paid-installment status stored on every bus pass from the payment records.
+     */
+    @PostMapping("/rebuild-pass-status")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public String rebuildPassStatus(RedirectAttributes redirectAttributes) {
+        try {
+            int updated = busPassService.rebuildInstallmentMasks();
+            redirectAttributes.addFlashAttribute("successMessage",
+                "Payment status rebuilt for " + updated + " bus passes.");
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage",
+                "Error rebuilding bus pass payment status: " + e.getMessage());
+        }
+        return "redirect:/payments";
+    }
+
+    /**
+     * ADMIN: Reconciles a gateway settlement file from the inbox directory against the payments
+     * PAID in the date range. The file is read from disk where the gateway delivered it.
+     */
+    @PostMapping("/reconcile")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public String reconcileSettlement(@RequestParam("file") String fileName,
+                                      @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                      @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                      RedirectAttributes redirectAttributes) {
+        Path settlementFile = reconciliationService.findSettlementFile(fileName);
+        if (settlementFile == null || from.isAfter(to)) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Please choose a settlement file and a valid date range.");
+            return "redirect:/payments";
+        }
+
+        try {
+            ReconciliationReport report = reconciliationService.reconcile(settlementFile, from, to);
+
+            redirectAttributes.addFlashAttribute("successMessage", "Reconciled " + report.getLines()
+                + " settlement lines against " + report.ledgerEntries + " ledger payments in "
+                + report.getElapsedMillis() + " ms: " + report.getMatched() + " matched, "
+                + report.getCount(MismatchType.MISSING_IN_LEDGER) + " missing in ledger, "
+                + report.getCount(MismatchType.MISSING_IN_SETTLEMENT) + " missing in settlement, "
+                + report.getCount(MismatchType.DUPLICATE) + " duplicates, "
+                + report.getCount(MismatchType.AMOUNT_DIFFERS) + " amount differences, "
+                + report.getCount(MismatchType.MALFORMED) + " malformed lines.");
+            redirectAttributes.addFlashAttribute("reconciliationReport", report.getReportName());
+        } catch (Exception e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Error reconciling settlement file: " + e.getMessage());
+        }
+        return "redirect:/payments";
+    }
+
+    /**
+     * ADMIN: Downloads the mismatch report of a reconciliation run.
+     */
+    @GetMapping("/reconcile/reports/{name}")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<Resource> downloadReconciliationReport(@PathVariable("name") String name) {
+        Path report = reconciliationService.findReport(name);
+        if (report == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + "\"")
+            .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+            .body(new FileSystemResource(report));
+    }
+
     /**
      * USER: View available route installments and payment options
      */
@@ -208,6 +334,8 @@ public class PaymentController {
 
             model.addAttribute("user", currentUser);
             model.addAttribute("busPass", busPass);
+            // One key per page render; the payment forms echo it back
+            model.addAttribute("idempotencyKey", UUID.randomUUID().toString());
 
         } catch (Exception e) {
             model.addAttribute("errorMessage", "Error loading installment information: " + e.getMessage());
@@ -239,12 +367,10 @@ public class PaymentController {
             // Check if user already has payments for another route
             if (busPass.getSelectedRoute() != null && 
                 !busPass.getSelectedRoute().equals(routeName)) {
-                List<Payment> existingPayments = paymentService.getPaymentsByUserId(currentUser.getId())
-                    .stream()
-                    .filter(p -> p.getStatus() == PaymentStatus.PAID)
-                    .collect(Collectors.toList());
+                long paidCount = paymentService.getPaymentTotals(currentUser.getId())
+                    .getCount(PaymentStatus.PAID);
                 
-                if (!existingPayments.isEmpty()) {
+                if (paidCount > 0) {
                     redirectAttributes.addFlashAttribute("errorMessage", 
                         "You already have payments for another route. Please contact admin to change routes.");
                     return "redirect:/payments/installments";
@@ -252,8 +378,7 @@ public class PaymentController {
             }
 
             // Set selected route on bus pass
-            busPass.setSelectedRoute(routeName);
-            busPassService.save(busPass);
+            busPassService.setSelectedRoute(currentUser, routeName);
 
             redirectAttributes.addFlashAttribute("successMessage", 
                 "Route selected successfully! You can now proceed with payments.");
@@ -267,69 +392,112 @@ public class PaymentController {
     }
 
     /**
-     * USER: Pay a specific installment
+     * USER: Pay a specific installment.
+     * Repeated submissions with the same idempotency key (double-clicks, retries) return the first result.
      */
     @PostMapping("/pay-installment")
     @PreAuthorize("hasAuthority('ROLE_USER')")
     public String payInstallment(@RequestParam("installmentNumber") Integer installmentNumber,
+                                @RequestParam(value = "idempotencyKey", required = false) String idempotencyKey,
                                 Principal principal,
                                 RedirectAttributes redirectAttributes) {
-        try {
-            User currentUser = userService.findByEmail(principal.getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        FlashMessage outcome = runOnce(principal, "pay-installment-" + installmentNumber, idempotencyKey, () -> {
+            try {
+                User currentUser = userService.findByEmail(principal.getName())
+                    .orElseThrow(() -> new RuntimeException("User not found"));
 
-            BusPass busPass = busPassService.findByUser(currentUser).orElse(null);
-            
-            if (busPass == null || busPass.getSelectedRoute() == null) {
-                redirectAttributes.addFlashAttribute("errorMessage", 
-                    "Please select a route first.");
-                return "redirect:/payments/installments";
-            }
-
-            paymentService.payInstallment(currentUser, busPass.getSelectedRoute(), installmentNumber);
-            redirectAttributes.addFlashAttribute("successMessage", 
-                "Installment " + installmentNumber + " paid successfully!");
+                BusPass busPass = busPassService.findByUser(currentUser).orElse(null);
+                
+                if (busPass == null || busPass.getSelectedRoute() == null) {
+                    return FlashMessage.error("Please select a route first.");
+                }
 
-        } catch (IllegalStateException e) {
-            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
-        } catch (Exception e) {
-            redirectAttributes.addFlashAttribute("errorMessage", 
-                "Error processing payment: " + e.getMessage());
-        }
+                if (paymentService.payInstallment(currentUser, busPass.getSelectedRoute(), installmentNumber)) {
+                    return FlashMessage.success("Installment " + installmentNumber + " paid successfully!");
+                }
+                return FlashMessage.success("Payment for installment " + installmentNumber
+                    + " submitted. It will be confirmed shortly.");
+
+            } catch (IllegalStateException e) {
+                return FlashMessage.error(e.getMessage());
+            } catch (DataIntegrityViolationException e) {
+                // Unique (user, route, installment) constraint: a concurrent request already recorded it
+                return FlashMessage.error("This installment has already been paid.");
+            } catch (Exception e) {
+                return FlashMessage.error("Error processing payment: " + e.getMessage());
+            }
+        });
 
+        redirectAttributes.addFlashAttribute(outcome.attribute, outcome.message);
         return "redirect:/payments/installments";
     }
 
     /**
-     * USER: Pay all 3 installments together
+     * USER: Pay all 3 installments together.
+     * Repeated submissions with the same idempotency key (double-clicks, retries) return the first result.
      */
     @PostMapping("/pay-all-installments")
     @PreAuthorize("hasAuthority('ROLE_USER')")
-    public String payAllInstallments(Principal principal, RedirectAttributes redirectAttributes) {
-        try {
-            User currentUser = userService.findByEmail(principal.getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    public String payAllInstallments(@RequestParam(value = "idempotencyKey", required = false) String idempotencyKey,
+                                     Principal principal, RedirectAttributes redirectAttributes) {
+        FlashMessage outcome = runOnce(principal, "pay-all-installments", idempotencyKey, () -> {
+            try {
+                User currentUser = userService.findByEmail(principal.getName())
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+
+                BusPass busPass = busPassService.findByUser(currentUser).orElse(null);
+                
+                if (busPass == null || busPass.getSelectedRoute() == null) {
+                    return FlashMessage.error("Please select a route first.");
+                }
 
-            BusPass busPass = busPassService.findByUser(currentUser).orElse(null);
-            
-            if (busPass == null || busPass.getSelectedRoute() == null) {
-                redirectAttributes.addFlashAttribute("errorMessage", 
-                    "Please select a route first.");
-                return "redirect:/payments/installments";
+                if (paymentService.payAllInstallments(currentUser, busPass.getSelectedRoute())) {
+                    return FlashMessage.success("All installments paid successfully! Your bus pass is now active.");
+                }
+                return FlashMessage.success("Payment submitted. Your bus pass will be activated once it is confirmed.");
+
+            } catch (IllegalStateException e) {
+                return FlashMessage.error(e.getMessage());
+            } catch (Exception e) {
+                return FlashMessage.error("Error processing payment: " + e.getMessage());
             }
+        });
 
-            paymentService.payAllInstallments(currentUser, busPass.getSelectedRoute());
-            redirectAttributes.addFlashAttribute("successMessage", 
-                "All installments paid successfully! Your bus pass is now active.");
+        redirectAttributes.addFlashAttribute(outcome.attribute, outcome.message);
+        return "redirect:/payments/installments";
+    }
 
-        } catch (IllegalStateException e) {
-            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
-        } catch (Exception e) {
-            redirectAttributes.addFlashAttribute("errorMessage", 
-                "Error processing payment: " + e.getMessage());
+    /**
+     * Runs a payment action at most once per (user, action, idempotency key).
+     * Requests without a key (e.g. from an old cached form) are simply executed.
+     */
+    private FlashMessage runOnce(Principal principal, String action, String idempotencyKey,
+                                 Supplier<FlashMessage> body) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return body.get();
         }
+        return idempotencyService.execute(principal.getName() + ":" + action + ":" + idempotencyKey, body);
+    }
 
-        return "redirect:/payments/installments";
+    /**
+     * Flash attribute name and message produced by a payment action
+     */
+    private static class FlashMessage {
+        final String attribute;
+        final String message;
+
+        private FlashMessage(String attribute, String message) {
+            this.attribute = attribute;
+            this.message = message;
+        }
+
+        static FlashMessage success(String message) {
+            return new FlashMessage("successMessage", message);
+        }
+
+        static FlashMessage error(String message) {
+            return new FlashMessage("errorMessage", message);
+        }
     }
 }
 
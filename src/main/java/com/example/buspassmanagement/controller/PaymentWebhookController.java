@@ -0,0 +1,81 @@
+package com.example.buspassmanagement.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.buspassmanagement.service.GatewayWebhookSigner;
+import com.example.buspassmanagement.service.MockPaymentGateway;
+import com.example.buspassmanagement.service.PaymentService;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Receives settlement callbacks from the payment gateway.
+ * Callbacks are authenticated by their HMAC signature rather than a login session.
+ */
+@RestController
+public class PaymentWebhookController {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private GatewayWebhookSigner signer;
+
+    @Autowired
+    private ObjectProvider<MockPaymentGateway> mockPaymentGateway;
+
+    /**
+     * GATEWAY: Settles (SUCCEEDED) or releases (FAILED) the payment for a charge reference.
+     */
+    @PostMapping("/payments/webhook")
+    public ResponseEntity<String> handleCallback(@RequestHeader(value = "X-Gateway-Signature", required = false) String signature,
+                                                 @RequestBody GatewayCallback callback) {
+        if (callback.getReference() == null || callback.getStatus() == null) {
+            return ResponseEntity.badRequest().body("reference and status are required");
+        }
+        if (!signer.verify(callback.getReference(), callback.getStatus(), signature)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("invalid signature");
+        }
+
+        try {
+            paymentService.handleGatewayCallback(callback.getReference(), "SUCCEEDED".equals(callback.getStatus()));
+            return ResponseEntity.ok("ok");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    /**
+     * ADMIN: Charge and callback counters of the mock gateway (empty when another gateway is active).
+     */
+    @GetMapping("/payments/gateway/stats")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public Map<String, Object> gatewayStats() {
+        MockPaymentGateway gateway = mockPaymentGateway.getIfAvailable();
+        return gateway != null ? gateway.getStats() : Map.of();
+    }
+
+    /**
+     * Webhook request body
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class GatewayCallback {
+        private String reference;
+        private String status;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.buspassmanagement.controller;
+
+import java.time.LocalDate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import com.example.buspassmanagement.service.RevenueRollupService;
+
+@Controller
+@RequestMapping("/revenue")
+@PreAuthorize("hasAuthority('ROLE_ADMIN')")
+public class RevenueController {
+
+    private static final int DEFAULT_DAYS = 30;
+
+    @Autowired
+    private RevenueRollupService revenueRollupService;
+
+    /**
+     * Revenue dashboard, read from the rollup table only (defaults to the last 30 days)
+     */
+    @GetMapping
+    public String showDashboard(@RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                Model model) {
+        LocalDate toDay = (to != null) ? to : LocalDate.now();
+        LocalDate fromDay = (from != null) ? from : toDay.minusDays(DEFAULT_DAYS - 1);
+        if (fromDay.isAfter(toDay)) {
+            model.addAttribute("errorMessage", "The start date must not be after the end date.");
+            fromDay = toDay;
+        }
+        model.addAttribute("dashboard", revenueRollupService.getDashboard(fromDay, toDay));
+        return "revenue";
+    }
+
+    /**
+     * Recompute the rollups of all past days from the payments ledger
+     */
+    @PostMapping("/rebuild")
+    public String rebuild(RedirectAttributes redirectAttributes) {
+        long buckets = revenueRollupService.rebuild(LocalDate.now());
+        redirectAttributes.addFlashAttribute("successMessage", "Revenue rollups rebuilt (" + buckets + " buckets).");
+        return "redirect:/revenue";
+    }
+}
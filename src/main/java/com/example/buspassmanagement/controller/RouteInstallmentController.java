@@ -16,6 +16,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import com.example.buspassmanagement.model.RouteInstallment;
 import com.example.buspassmanagement.service.BusService;
+import com.example.buspassmanagement.service.InstallmentScheduleService;
 import com.example.buspassmanagement.service.RouteInstallmentService;
 
 import jakarta.validation.Valid;
@@ -31,6 +32,9 @@ public class RouteInstallmentController {
     @Autowired
     private BusService busService;
 
+    @Autowired
+    private InstallmentScheduleService installmentScheduleService;
+
     /**
      * Display all route installment configurations
      */
@@ -38,6 +42,7 @@ public class RouteInstallmentController {
     public String showRouteInstallments(Model model) {
         List<RouteInstallment> installments = routeInstallmentService.findAll();
         model.addAttribute("installments", installments);
+        model.addAttribute("generationProgress", installmentScheduleService.getProgress());
         return "route-installments";
     }
 
@@ -73,7 +78,7 @@ public class RouteInstallmentController {
 
         routeInstallmentService.save(routeInstallment);
         redirectAttributes.addFlashAttribute("success", 
-            "Route installment configuration added successfully!");
+            "Route installment configuration added successfully! Pending installments are being generated for students on this route.");
         return "redirect:/route-installments";
     }
 
@@ -112,7 +117,7 @@ public class RouteInstallmentController {
         routeInstallment.setId(id);
         routeInstallmentService.save(routeInstallment);
         redirectAttributes.addFlashAttribute("success", 
-            "Route installment configuration updated successfully!");
+            "Route installment configuration updated successfully! Pending installments are being regenerated for students on this route.");
         return "redirect:/route-installments";
     }
 
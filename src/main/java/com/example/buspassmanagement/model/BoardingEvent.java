@@ -0,0 +1,44 @@
+package com.example.buspassmanagement.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One pass scan at boarding. Rows are written in JDBC batches by
+ * BoardingEventService, not through JPA; the entity is for reading.
+ */
+@Entity
+@Table(name = "boarding_events", indexes = {
+    // Ridership per bus over a time range
+    @Index(name = "idx_boarding_events_bus_tapped", columnList = "bus_id, tapped_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BoardingEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long passId;
+
+    @Column(nullable = false)
+    private Long busId;
+
+    @Column(nullable = false, columnDefinition = "DATETIME(3)")
+    private LocalDateTime tappedAt;
+}
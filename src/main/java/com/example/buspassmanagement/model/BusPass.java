@@ -1,6 +1,7 @@
 package com.example.buspassmanagement.model;
 
 import java.io.Serializable;
+import java.time.LocalDate;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -9,9 +10,11 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -22,7 +25,12 @@ import lombok.Setter;
  * Each user can have one bus pass.
  */
 @Entity
-@Table(name = "passes")
+@Table(name = "passes", indexes = {
+    // Installment schedule generation walks the passes of one route
+    @Index(name = "idx_passes_selected_route", columnList = "selected_route"),
+    // Expiry sweep walks the active passes past their validity
+    @Index(name = "idx_passes_status_valid_until", columnList = "status, valid_until")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -42,24 +50,82 @@ public class BusPass implements Serializable {
     @Column(nullable = true)
     private String selectedRoute;
 
-    // Pass status - ACTIVE or INACTIVE (stored as string, not binary)
+    // Pass status - ACTIVE, INACTIVE or EXPIRED (stored as string, not binary)
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 20)
     private PassStatus status = PassStatus.INACTIVE;
 
+    // Optimistic lock: concurrent read-modify-write updates fail and are retried instead of overwriting
+    @Version
+    @Column(nullable = false)
+    private long version;
+
+    // Paid installments for the selected route, maintained from the payments ledger
+    // so status checks only need this row (see MASK_* constants)
+    @Column(nullable = false)
+    private int paidInstallmentMask = 0;
+
+    // Validity window, set on activation and renewal; a null validUntil never expires
+    @Column(nullable = true)
+    private LocalDate validFrom;
+
+    @Column(nullable = true)
+    private LocalDate validUntil;
+
+    // Bits of paidInstallmentMask: one per installment plus a full-payment flag
+    public static final int MASK_INSTALLMENT_1 = 1;
+    public static final int MASK_INSTALLMENT_2 = 1 << 1;
+    public static final int MASK_INSTALLMENT_3 = 1 << 2;
+    public static final int MASK_FULL_PAYMENT = 1 << 3;
+    public static final int MASK_ALL_INSTALLMENTS = MASK_INSTALLMENT_1 | MASK_INSTALLMENT_2 | MASK_INSTALLMENT_3;
+
     /**
      * Enum for pass status - more readable than boolean
      */
     public enum PassStatus {
         ACTIVE,
-        INACTIVE
+        INACTIVE,
+        EXPIRED
     }
 
     /**
-     * Helper method to check if pass is active
+     * Helper method to check if pass is active (and not past its validity, even before the expiry sweep)
      */
     public boolean isActive() {
-        return this.status == PassStatus.ACTIVE;
+        return this.status == PassStatus.ACTIVE && !isPastValidity();
+    }
+
+    /**
+     * Helper method to check if pass has expired (or is due to be expired by the sweep)
+     */
+    public boolean isExpired() {
+        return this.status == PassStatus.EXPIRED || (this.status == PassStatus.ACTIVE && isPastValidity());
+    }
+
+    private boolean isPastValidity() {
+        return validUntil != null && validUntil.isBefore(LocalDate.now());
+    }
+
+    /**
+     * Helper method to check if a specific installment (1, 2 or 3) is paid
+     */
+    public boolean hasPaidInstallment(int installmentNumber) {
+        return (paidInstallmentMask & (1 << (installmentNumber - 1))) != 0;
+    }
+
+    /**
+     * Helper method to check if the route was paid in one full payment
+     */
+    public boolean hasFullPayment() {
+        return (paidInstallmentMask & MASK_FULL_PAYMENT) != 0;
+    }
+
+    /**
+     * Helper method to check if the route fee is fully paid either way
+     */
+    public boolean isFullyPaid() {
+        return hasFullPayment()
+            || (paidInstallmentMask & MASK_ALL_INSTALLMENTS) == MASK_ALL_INSTALLMENTS;
     }
 
     /**
@@ -69,6 +135,15 @@ public class BusPass implements Serializable {
         this.status = PassStatus.ACTIVE;
     }
 
+    /**
+     * Helper method to activate the pass for a validity window
+     */
+    public void activate(LocalDate validFrom, LocalDate validUntil) {
+        activate();
+        this.validFrom = validFrom;
+        this.validUntil = validUntil;
+    }
+
     /**
      * Helper method to deactivate the pass
      */
@@ -6,7 +6,6 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
-import jakarta.persistence.Lob;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.Email;
@@ -38,9 +37,9 @@ public class Driver {
 
     private String phone;
 
-    @Lob
-    @Column(columnDefinition = "LONGTEXT")
-    private String image;
+    // SHA-256 key of the driver's photo in the blob store (see BlobStore)
+    @Column(nullable = true, length = 64)
+    private String imageKey;
 
     @ManyToOne
     @JoinColumn(name = "bus_id")
@@ -0,0 +1,47 @@
+package com.example.buspassmanagement.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Audit record of one run of a background job (e.g. the overdue payment sweeper).
+ */
+@Entity
+@Table(name = "job_runs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String jobName;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(nullable = true)
+    private LocalDateTime finishedAt;
+
+    // Number of rows the run changed
+    @Column(nullable = false)
+    private long rowsAffected = 0;
+
+    // Set when the run failed
+    @Column(nullable = true, length = 500)
+    private String errorMessage;
+}
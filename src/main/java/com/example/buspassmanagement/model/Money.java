@@ -0,0 +1,38 @@
+package com.example.buspassmanagement.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversions for money amounts, which are stored as whole paise in a long.
+ * Rupee BigDecimals are only used at the edges (forms, pages, CSV files).
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    /**
+     * Paise as rupees with two decimals, e.g. 150050 -> 1500.50
+     */
+    public static BigDecimal toRupees(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    /**
+     * Rupees as paise, rounding anything below one paisa half-up; null counts as zero
+     */
+    public static long toPaise(BigDecimal rupees) {
+        if (rupees == null) {
+            return 0L;
+        }
+        return rupees.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    /**
+     * Paise as a plain rupee string for files and messages, e.g. 150050 -> "1500.50"
+     */
+    public static String format(long paise) {
+        return toRupees(paise).toPlainString();
+    }
+}
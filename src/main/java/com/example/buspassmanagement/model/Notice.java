@@ -7,6 +7,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -17,7 +18,10 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table(name = "notices")
+@Table(name = "notices", indexes = {
+    // Notice board: ORDER BY timestamp DESC
+    @Index(name = "idx_notices_timestamp", columnList = "timestamp")
+})
 @Getter
 @Setter
 @NoArgsConstructor
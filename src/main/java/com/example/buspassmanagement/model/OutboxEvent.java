@@ -0,0 +1,91 @@
+package com.example.buspassmanagement.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Transactional outbox entry: a side effect (notification, pass event) recorded in the
+ * same transaction as the payment that caused it, and carried out later by the
+ * OutboxDispatcher so the checkout request does not wait for it.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+    // Dispatcher poll: WHERE status = 'PENDING' AND available_at <= ?
+    @Index(name = "idx_outbox_status_available", columnList = "status, available_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private EventType eventType;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = true)
+    private String routeName;
+
+    // Installment number for payment events - null means full payment
+    @Column(nullable = true)
+    private Integer installmentNumber;
+
+    // Payment amount in paise, for payment events
+    @Column(nullable = true)
+    private Long amountPaise;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 15)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // Not dispatched before this time (used for retry backoff)
+    @Column(nullable = false)
+    private LocalDateTime availableAt = LocalDateTime.now();
+
+    @Column(nullable = true)
+    private LocalDateTime claimedAt;
+
+    @Column(nullable = true)
+    private LocalDateTime processedAt;
+
+    @Column(nullable = true, length = 500)
+    private String lastError;
+
+    public enum EventType {
+        PAYMENT_RECEIVED,
+        PASS_ACTIVATED
+    }
+
+    public enum Status {
+        PENDING,
+        PROCESSING,
+        DONE,
+        FAILED
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.buspassmanagement.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One entry in the change log of bus pass status transitions.
+ * The ID is the monotonically increasing change version offline validators sync from.
+ */
+@Entity
+@Table(name = "pass_status_changes")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PassStatusChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long passId;
+
+    // Status of the pass after the change
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private BusPass.PassStatus status;
+
+    @Column(nullable = true)
+    private String routeName;
+
+    @Column(nullable = true)
+    private LocalDate validUntil;
+
+    @Column(nullable = false, columnDefinition = "DATETIME(3)")
+    private LocalDateTime changedAt;
+}
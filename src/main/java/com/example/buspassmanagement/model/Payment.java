@@ -1,5 +1,6 @@
 package com.example.buspassmanagement.model;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 
 import jakarta.persistence.Column;
@@ -9,9 +10,12 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -20,7 +24,16 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+    // Overdue sweeper: WHERE status = 'PENDING' AND due_date < ?
+    @Index(name = "idx_payments_status_due_date", columnList = "status, due_date"),
+    // Per-user route lookups: WHERE user_id = ? AND route_name = ? AND status = ?
+    @Index(name = "idx_payments_user_route_status", columnList = "user_id, route_name, status")
+}, uniqueConstraints = {
+    // At most one record per installment, so concurrent payments cannot both insert a PAID row
+    @UniqueConstraint(name = "uk_payments_user_route_installment",
+                      columnNames = {"user_id", "route_name", "installment_number"})
+})
 @Getter
 @Setter
 @NoArgsConstructor // Required for JPA/Hibernate
@@ -37,10 +50,10 @@ public class Payment {
     @NotNull(message = "User is required for payment.")
     private User user;
 
-    @NotNull(message = "Amount is required.") 
+    // Amount in paise
     @Min(value = 0, message = "Amount must be zero or positive.") 
     @Column(nullable = false)
-    private Double amount;
+    private long amountPaise;
 
     @NotNull(message = "Due date is required.") 
     @Column(nullable = false)
@@ -67,6 +80,20 @@ public class Payment {
     @Column(nullable = false)
     private Boolean isFullPayment = false;
     
+    // Reference of the gateway charge for this payment, set once it has been submitted
+    @Column(nullable = true, unique = true, length = 64)
+    private String gatewayReference;
+
+    // Optimistic lock: concurrent read-modify-write updates fail and are retried instead of overwriting
+    @Version
+    @Column(nullable = false)
+    private long version;
+
+    // Rupee view of the amount, used by the pages
+    public BigDecimal getAmount() {
+        return Money.toRupees(amountPaise);
+    }
+
     // Define the Enum for status
     public enum PaymentStatus {
         PENDING, PAID, OVERDUE, CANCELLED
@@ -0,0 +1,58 @@
+package com.example.buspassmanagement.model;
+
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Collected revenue per day, route and installment, maintained as payments become PAID.
+ * The admin revenue dashboard reads only this table, never the payments ledger.
+ */
+@Entity
+@Table(name = "revenue_rollups", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_revenue_rollups_day_route_installment",
+                      columnNames = {"day", "route_name", "installment_number"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueRollup {
+
+    // Route name used for lump-sum payments that are not tied to a route
+    public static final String NO_ROUTE = "";
+
+    // Installment number used for full payments and lump sums
+    public static final int FULL_PAYMENT = 0;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Payment date
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private String routeName;
+
+    // 1-3 for installments, FULL_PAYMENT (0) otherwise
+    @Column(nullable = false)
+    private int installmentNumber;
+
+    @Column(nullable = false)
+    private long amountPaise;
+
+    @Column(nullable = false)
+    private long paymentCount;
+}
@@ -1,6 +1,7 @@
 package com.example.buspassmanagement.model;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 
 import jakarta.persistence.Column;
@@ -9,7 +10,7 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
-import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
@@ -37,46 +38,64 @@ public class RouteInstallment implements Serializable {
     @Column(nullable = false, unique = true)
     private String routeName;
 
-    // First Installment
-    @NotNull(message = "First installment amount is required.")
-    @Min(value = 0, message = "Amount must be zero or positive.")
+    // First Installment (amounts in paise; null only while a submitted form leaves one blank)
     @Column(nullable = false)
-    private Double installment1Amount;
+    private Long installment1AmountPaise;
 
     @NotNull(message = "First installment deadline is required.")
     @Column(nullable = false)
     private LocalDate installment1Deadline;
 
     // Second Installment
-    @NotNull(message = "Second installment amount is required.")
-    @Min(value = 0, message = "Amount must be zero or positive.")
     @Column(nullable = false)
-    private Double installment2Amount;
+    private Long installment2AmountPaise;
 
     @NotNull(message = "Second installment deadline is required.")
     @Column(nullable = false)
     private LocalDate installment2Deadline;
 
     // Third Installment
-    @NotNull(message = "Third installment amount is required.")
-    @Min(value = 0, message = "Amount must be zero or positive.")
     @Column(nullable = false)
-    private Double installment3Amount;
+    private Long installment3AmountPaise;
 
     @NotNull(message = "Third installment deadline is required.")
     @Column(nullable = false)
     private LocalDate installment3Deadline;
 
-    // Total fee for the route (sum of all installments)
+    // Total fee for the route (sum of all installments), in paise
     @Column(nullable = false)
-    private Double totalFee;
+    private long totalFeePaise;
 
     // Helper method to calculate total fee
     public void calculateTotalFee() {
-        double amount1 = (installment1Amount != null ? installment1Amount : 0.0);
-        double amount2 = (installment2Amount != null ? installment2Amount : 0.0);
-        double amount3 = (installment3Amount != null ? installment3Amount : 0.0);
-        this.totalFee = amount1 + amount2 + amount3;
+        this.totalFeePaise = Math.addExact(Math.addExact(installment1AmountPaise, installment2AmountPaise), installment3AmountPaise);
+    }
+
+    // Rupee views of the amounts, used by the forms and pages. Validated here, on the
+    // properties the forms bind and show errors for; a blank amount stays null.
+    @NotNull(message = "First installment amount is required.")
+    @DecimalMin(value = "0", message = "Amount must be zero or positive.")
+    public BigDecimal getInstallment1Amount() { return toRupees(installment1AmountPaise); }
+    public void setInstallment1Amount(BigDecimal rupees) { this.installment1AmountPaise = toPaise(rupees); }
+
+    @NotNull(message = "Second installment amount is required.")
+    @DecimalMin(value = "0", message = "Amount must be zero or positive.")
+    public BigDecimal getInstallment2Amount() { return toRupees(installment2AmountPaise); }
+    public void setInstallment2Amount(BigDecimal rupees) { this.installment2AmountPaise = toPaise(rupees); }
+
+    @NotNull(message = "Third installment amount is required.")
+    @DecimalMin(value = "0", message = "Amount must be zero or positive.")
+    public BigDecimal getInstallment3Amount() { return toRupees(installment3AmountPaise); }
+    public void setInstallment3Amount(BigDecimal rupees) { this.installment3AmountPaise = toPaise(rupees); }
+
+    public BigDecimal getTotalFee() { return Money.toRupees(totalFeePaise); }
+
+    private static BigDecimal toRupees(Long paise) {
+        return paise != null ? Money.toRupees(paise) : null;
+    }
+
+    private static Long toPaise(BigDecimal rupees) {
+        return rupees != null ? Money.toPaise(rupees) : null;
     }
 }
 
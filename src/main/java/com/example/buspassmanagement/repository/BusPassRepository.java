@@ -1,11 +1,19 @@
 package com.example.buspassmanagement.repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.buspassmanagement.model.BusPass;
+import com.example.buspassmanagement.model.Payment;
 import com.example.buspassmanagement.model.User;
 
 @Repository
@@ -30,7 +38,103 @@ public interface BusPassRepository extends JpaRepository<BusPass, Long> {
      * Delete bus pass by user
      */
     void deleteByUser(User user);
-}
 
+    /**
+     * Highest pass ID, used to walk the table in ID ranges
+     */
+    @Query("SELECT COALESCE(MAX(b.id), 0) FROM BusPass b")
+    long findMaxId();
+
+    /**
+     * ID and version of every pass in the given statuses
+     */
+    @Query("SELECT b.id AS id, b.version AS version FROM BusPass b WHERE b.status IN :statuses")
+    List<PassVersion> findVersionsByStatusIn(@Param("statuses") Collection<BusPass.PassStatus> statuses);
+
+    /**
+     * ID, version, selected route and validity end of every pass in a status that is still valid on the given day
+     */
+    @Query("SELECT b.id AS id, b.version AS version, b.selectedRoute AS selectedRoute, b.validUntil AS validUntil " +
+           "FROM BusPass b WHERE b.status = :status AND (b.validUntil IS NULL OR b.validUntil >= :day)")
+    List<PassValidity> findRoutesByStatusValidOn(@Param("status") BusPass.PassStatus status,
+                                              @Param("day") LocalDate day);
+
+    /**
+     * Lock the next chunk of active passes whose validity ended before the given day.
+     * Served by the (status, valid_until) index; must run inside a transaction.
+     */
+    @Query(value = "SELECT id AS id, version AS version, selected_route AS selectedRoute FROM passes " +
+                   "WHERE status = 'ACTIVE' AND valid_until < :today ORDER BY id LIMIT :limit FOR UPDATE",
+           nativeQuery = true)
+    List<PassRoute> lockExpiredChunk(@Param("today") LocalDate today, @Param("limit") int limit);
+
+    /**
+     * Lock the next chunk of expired, fully paid passes (optionally on one route) for renewal.
+     * Must run inside a transaction. A mask of 7 means all three installments, 8 and
+     * above the full-payment bit (see BusPass.MASK_*).
+     */
+    @Query(value = "SELECT id AS id, version AS version, selected_route AS selectedRoute FROM passes " +
+                   "WHERE status = 'EXPIRED' AND (paid_installment_mask = 7 OR paid_installment_mask >= 8) " +
+                   "AND (:routeName IS NULL OR selected_route = :routeName) ORDER BY id LIMIT :limit FOR UPDATE",
+           nativeQuery = true)
+    List<PassRoute> lockRenewableChunk(@Param("routeName") String routeName, @Param("limit") int limit);
+
+    /**
+     * Set the status of the given passes in one statement
+     */
+    @Modifying
+    @Query("UPDATE BusPass b SET b.status = :status, b.version = b.version + 1 WHERE b.id IN :ids")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") BusPass.PassStatus status);
+
+    /**
+     * Set the status and validity window of the given passes in one statement
+     */
+    @Modifying
+    @Query("UPDATE BusPass b SET b.status = :status, b.validFrom = :validFrom, b.validUntil = :validUntil, " +
+           "b.version = b.version + 1 WHERE b.id IN :ids")
+    int updateStatusAndValidity(@Param("ids") Collection<Long> ids,
+                                @Param("status") BusPass.PassStatus status,
+                                @Param("validFrom") LocalDate validFrom,
+                                @Param("validUntil") LocalDate validUntil);
+
+    /**
+     * Recompute the paid-installment mask of passes in an ID range from the payments ledger.
+     * Runs as one set-based UPDATE in its own transaction; the mask encoding matches
+     * PaymentRepository.findInstallmentMask.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE BusPass b SET b.version = b.version + 1, b.paidInstallmentMask = (" +
+           "SELECT COALESCE(" +
+           "MAX(CASE WHEN p.installmentNumber = 1 THEN 1 ELSE 0 END) + " +
+           "MAX(CASE WHEN p.installmentNumber = 2 THEN 2 ELSE 0 END) + " +
+           "MAX(CASE WHEN p.installmentNumber = 3 THEN 4 ELSE 0 END) + " +
+           "MAX(CASE WHEN p.isFullPayment = true THEN 8 ELSE 0 END), 0) " +
+           "FROM Payment p WHERE p.user = b.user AND p.routeName = b.selectedRoute AND p.status = :status) " +
+           "WHERE b.id BETWEEN :fromId AND :toId")
+    int rebuildInstallmentMasks(@Param("fromId") Long fromId,
+                                @Param("toId") Long toId,
+                                @Param("status") Payment.PaymentStatus status);
 
+    /**
+     * Projection for a pass ID and its version
+     */
+    interface PassVersion {
+        Long getId();
+        long getVersion();
+    }
+
+    /**
+     * Projection for a pass ID, its version and its selected route
+     */
+    interface PassRoute extends PassVersion {
+        String getSelectedRoute();
+    }
 
+    /**
+     * Projection for a pass ID, its version, its selected route and the end of its validity
+     */
+    interface PassValidity extends PassRoute {
+        LocalDate getValidUntil();
+    }
+}
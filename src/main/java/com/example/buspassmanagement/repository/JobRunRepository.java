@@ -0,0 +1,17 @@
+package com.example.buspassmanagement.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.buspassmanagement.model.JobRun;
+
+@Repository
+public interface JobRunRepository extends JpaRepository<JobRun, Long> {
+
+    /**
+     * Most recent runs of a job, newest first
+     */
+    List<JobRun> findTop20ByJobNameOrderByStartedAtDesc(String jobName);
+}
@@ -0,0 +1,57 @@
+package com.example.buspassmanagement.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.buspassmanagement.model.OutboxEvent;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Lock the next batch of dispatchable events. SKIP LOCKED lets several app instances
+     * poll at once without blocking on or double-claiming each other's rows. Events left
+     * PROCESSING by a crashed instance are picked up again once their claim is stale.
+     * Must run inside a transaction.
+     */
+    @Query(value = "SELECT id FROM outbox_events " +
+                   "WHERE (status = 'PENDING' AND available_at <= :now) " +
+                   "OR (status = 'PROCESSING' AND claimed_at < :staleBefore) " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<Long> lockNextBatch(@Param("now") LocalDateTime now,
+                             @Param("staleBefore") LocalDateTime staleBefore,
+                             @Param("limit") int limit);
+
+    /**
+     * Mark locked events as claimed by this dispatcher
+     */
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.status = :status, e.claimedAt = :now WHERE e.id IN :ids")
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("status") OutboxEvent.Status status,
+              @Param("now") LocalDateTime now);
+
+    /**
+     * Mark a batch of events as processed in one statement
+     */
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.status = :status, e.processedAt = :now WHERE e.id IN :ids")
+    int complete(@Param("ids") Collection<Long> ids,
+                 @Param("status") OutboxEvent.Status status,
+                 @Param("now") LocalDateTime now);
+
+    /**
+     * Remove processed events older than the cutoff
+     */
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.status = :status AND e.processedAt < :before")
+    int purge(@Param("status") OutboxEvent.Status status, @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,55 @@
+package com.example.buspassmanagement.repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.buspassmanagement.model.PassStatusChange;
+
+@Repository
+public interface PassStatusChangeRepository extends JpaRepository<PassStatusChange, Long> {
+
+    /**
+     * Append one change. Must run in the transaction that makes the change.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO pass_status_changes (pass_id, status, route_name, valid_until, changed_at) " +
+                   "VALUES (:passId, :status, :routeName, :validUntil, :changedAt)",
+           nativeQuery = true)
+    int record(@Param("passId") Long passId,
+               @Param("status") String status,
+               @Param("routeName") String routeName,
+               @Param("validUntil") LocalDate validUntil,
+               @Param("changedAt") LocalDateTime changedAt);
+
+    /**
+     * Append the current state of the given passes in one statement, after a bulk update
+     * in the same transaction
+     */
+    @Modifying
+    @Query(value = "INSERT INTO pass_status_changes (pass_id, status, route_name, valid_until, changed_at) " +
+                   "SELECT id, status, selected_route, valid_until, :changedAt FROM passes WHERE id IN :ids ORDER BY id",
+           nativeQuery = true)
+    int recordAll(@Param("ids") Collection<Long> ids, @Param("changedAt") LocalDateTime changedAt);
+
+    /**
+     * Changes after a version up to a ceiling, oldest first
+     */
+    List<PassStatusChange> findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(Long version,
+                                                                             Long ceiling,
+                                                                             Pageable pageable);
+
+    /**
+     * Highest committed version, or null when the log is empty
+     */
+    @Query("SELECT MAX(c.id) FROM PassStatusChange c")
+    Long findMaxId();
+}
@@ -1,13 +1,26 @@
 package com.example.buspassmanagement.repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository; // Recommended to add @Repository
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.buspassmanagement.model.Payment;
 import com.example.buspassmanagement.model.User; // ⬅️ NEW IMPORT
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     
@@ -26,4 +39,126 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     
     // Find paid payments by user and route name
     List<Payment> findByUserAndRouteNameAndStatus(User user, String routeName, Payment.PaymentStatus status);
-}
\ No newline at end of file
+
+    // Bulk delete of a user's outstanding payments on a route, keeping one record (the settling full payment).
+    // Rows already submitted to the gateway are kept so their callback still finds them.
+    @Modifying
+    @Query("DELETE FROM Payment p WHERE p.user = :user AND p.routeName = :routeName " +
+           "AND p.status IN :statuses AND p.gatewayReference IS NULL AND p.id <> :keepId")
+    int deleteOutstandingForRouteExcept(@Param("user") User user,
+                                        @Param("routeName") String routeName,
+                                        @Param("statuses") Collection<Payment.PaymentStatus> statuses,
+                                        @Param("keepId") Long keepId);
+
+    // Bulk delete of a user's unpaid rows on a route that were never submitted to the gateway
+    @Modifying
+    @Query("DELETE FROM Payment p WHERE p.user = :user AND p.routeName = :routeName " +
+           "AND p.status IN :statuses AND p.gatewayReference IS NULL")
+    int deleteUnsubmittedForRoute(@Param("user") User user,
+                                  @Param("routeName") String routeName,
+                                  @Param("statuses") Collection<Payment.PaymentStatus> statuses);
+
+    // Whether a user has a payment on the route that was submitted to the gateway and is not PAID yet
+    @Query("SELECT COUNT(p) > 0 FROM Payment p WHERE p.user = :user AND p.routeName = :routeName " +
+           "AND p.status <> :paid AND p.gatewayReference IS NOT NULL")
+    boolean existsAwaitingSettlement(@Param("user") User user,
+                                     @Param("routeName") String routeName,
+                                     @Param("paid") Payment.PaymentStatus paid);
+
+    // Find the payment a gateway charge belongs to
+    Optional<Payment> findByGatewayReference(String gatewayReference);
+
+    // Move up to :limit PENDING payments past their due date to OVERDUE in one statement.
+    // Runs in its own transaction so each chunk commits and releases its row locks;
+    // served by the (status, due_date) index on payments.
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE payments SET status = 'OVERDUE', version = version + 1 WHERE status = 'PENDING' AND due_date < :today LIMIT :limit",
+           nativeQuery = true)
+    int markOverdueChunk(@Param("today") LocalDate today, @Param("limit") int limit);
+
+    // Keyset (seek) page of payments for the admin listing, ordered by id.
+    // The inner JOIN FETCH loads each user in the same query and drops rows
+    // whose user no longer exists, so no per-row lazy lookups are needed.
+    // Pass Pageable.ofSize(n) to cap the page; the offset is always 0.
+    @Query("SELECT p FROM Payment p JOIN FETCH p.user u WHERE p.id > :afterId ORDER BY p.id ASC")
+    List<Payment> findPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Paid-installment bitmask for a user's route: bit 0/1/2 = installment 1/2/3,
+    // bit 3 = full payment. Keep in sync with the BusPass.MASK_* constants.
+    @Query("SELECT COALESCE(" +
+           "MAX(CASE WHEN p.installmentNumber = 1 THEN 1 ELSE 0 END) + " +
+           "MAX(CASE WHEN p.installmentNumber = 2 THEN 2 ELSE 0 END) + " +
+           "MAX(CASE WHEN p.installmentNumber = 3 THEN 4 ELSE 0 END) + " +
+           "MAX(CASE WHEN p.isFullPayment = true THEN 8 ELSE 0 END), 0) " +
+           "FROM Payment p WHERE p.user = :user AND p.routeName = :routeName AND p.status = :status")
+    int findInstallmentMask(@Param("user") User user,
+                            @Param("routeName") String routeName,
+                            @Param("status") Payment.PaymentStatus status);
+
+    // Sum and count of a user's payments grouped by status, computed in one query
+    @Query("SELECT p.status AS status, SUM(p.amountPaise) AS total, COUNT(p) AS count " +
+           "FROM Payment p WHERE p.user.id = :userId GROUP BY p.status")
+    List<StatusTotal> sumByStatusForUser(@Param("userId") Long userId);
+
+    // Sum and count of a user's unpaid rows on a route that were never submitted to the gateway,
+    // in one query (the rows deleteUnsubmittedForRoute removes)
+    @Query("SELECT COALESCE(SUM(p.amountPaise), 0) AS total, COUNT(p) AS count " +
+           "FROM Payment p WHERE p.user = :user AND p.routeName = :routeName " +
+           "AND p.status IN :statuses AND p.gatewayReference IS NULL")
+    AmountTotal sumUnsubmittedForRoute(@Param("user") User user,
+                                       @Param("routeName") String routeName,
+                                       @Param("statuses") Collection<Payment.PaymentStatus> statuses);
+
+    /**
+     * Projection for a sum (in paise) and count of payments
+     */
+    interface AmountTotal {
+        long getTotal();
+        long getCount();
+    }
+
+    /**
+     * Projection for one row of a per-status aggregate
+     */
+    interface StatusTotal extends AmountTotal {
+        Payment.PaymentStatus getStatus();
+    }
+
+    // Ledger rows for the CSV export as flat projections, streamed from the database.
+    // A fetch size of Integer.MIN_VALUE makes MySQL Connector/J stream row by row
+    // instead of buffering the whole result set; null filters are ignored.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p.id AS id, u.name AS studentName, u.email AS studentEmail, p.routeName AS routeName, " +
+           "p.installmentNumber AS installmentNumber, p.isFullPayment AS isFullPayment, p.amountPaise AS amountPaise, " +
+           "p.dueDate AS dueDate, p.paymentDate AS paymentDate, p.status AS status " +
+           "FROM Payment p JOIN p.user u " +
+           "WHERE (:routeName IS NULL OR p.routeName = :routeName) " +
+           "AND (:status IS NULL OR p.status = :status) " +
+           "AND (:fromDate IS NULL OR p.dueDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR p.dueDate <= :toDate) " +
+           "ORDER BY p.id ASC")
+    Stream<ExportRow> streamForExport(@Param("routeName") String routeName,
+                                      @Param("status") Payment.PaymentStatus status,
+                                      @Param("fromDate") LocalDate fromDate,
+                                      @Param("toDate") LocalDate toDate);
+
+    /**
+     * Projection for one row of the ledger export
+     */
+    interface ExportRow {
+        Long getId();
+        String getStudentName();
+        String getStudentEmail();
+        String getRouteName();
+        Integer getInstallmentNumber();
+        Boolean getIsFullPayment();
+        long getAmountPaise();
+        LocalDate getDueDate();
+        LocalDate getPaymentDate();
+        Payment.PaymentStatus getStatus();
+    }
+}
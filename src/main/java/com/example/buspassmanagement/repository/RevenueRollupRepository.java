@@ -0,0 +1,83 @@
+package com.example.buspassmanagement.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.example.buspassmanagement.model.RevenueRollup;
+
+@Repository
+public interface RevenueRollupRepository extends JpaRepository<RevenueRollup, Long> {
+
+    // Add one PAID payment to its day/route/installment bucket, creating the bucket if needed
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollups (day, route_name, installment_number, amount_paise, payment_count) " +
+                   "VALUES (:day, :routeName, :installmentNumber, :amountPaise, 1) " +
+                   "ON DUPLICATE KEY UPDATE amount_paise = amount_paise + VALUES(amount_paise), " +
+                   "payment_count = payment_count + 1",
+           nativeQuery = true)
+    int increment(@Param("day") LocalDate day,
+                  @Param("routeName") String routeName,
+                  @Param("installmentNumber") int installmentNumber,
+                  @Param("amountPaise") long amountPaise);
+
+    // Drop the buckets of days before :before, ahead of recomputing them
+    @Modifying
+    @Query(value = "DELETE FROM revenue_rollups WHERE day < :before", nativeQuery = true)
+    int deleteBefore(@Param("before") LocalDate before);
+
+    // Recompute the buckets of days before :before from the PAID payments on the ledger.
+    // Keep the bucket keys in sync with RevenueRollupService.recordPayment.
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollups (day, route_name, installment_number, amount_paise, payment_count) " +
+                   "SELECT payment_date, COALESCE(route_name, ''), " +
+                   "CASE WHEN is_full_payment THEN 0 ELSE COALESCE(installment_number, 0) END, " +
+                   "SUM(amount_paise), COUNT(*) " +
+                   "FROM payments WHERE status = 'PAID' AND payment_date < :before " +
+                   "GROUP BY 1, 2, 3",
+           nativeQuery = true)
+    int rebuildBefore(@Param("before") LocalDate before);
+
+    // Revenue per route between two days (inclusive), largest first
+    @Query("SELECT r.routeName AS routeName, SUM(r.amountPaise) AS total, SUM(r.paymentCount) AS count " +
+           "FROM RevenueRollup r WHERE r.day BETWEEN :fromDay AND :toDay " +
+           "GROUP BY r.routeName ORDER BY SUM(r.amountPaise) DESC")
+    List<RouteRevenue> sumByRoute(@Param("fromDay") LocalDate fromDay, @Param("toDay") LocalDate toDay);
+
+    // Revenue per installment number between two days (inclusive)
+    @Query("SELECT r.installmentNumber AS installmentNumber, SUM(r.amountPaise) AS total, SUM(r.paymentCount) AS count " +
+           "FROM RevenueRollup r WHERE r.day BETWEEN :fromDay AND :toDay " +
+           "GROUP BY r.installmentNumber ORDER BY r.installmentNumber")
+    List<InstallmentRevenue> sumByInstallment(@Param("fromDay") LocalDate fromDay, @Param("toDay") LocalDate toDay);
+
+    // Revenue per day between two days (inclusive), oldest first
+    @Query("SELECT r.day AS day, SUM(r.amountPaise) AS total, SUM(r.paymentCount) AS count " +
+           "FROM RevenueRollup r WHERE r.day BETWEEN :fromDay AND :toDay " +
+           "GROUP BY r.day ORDER BY r.day")
+    List<DailyRevenue> sumByDay(@Param("fromDay") LocalDate fromDay, @Param("toDay") LocalDate toDay);
+
+    /**
+     * Projection for a revenue sum (in paise) and payment count
+     */
+    interface RevenueTotal {
+        long getTotal();
+        long getCount();
+    }
+
+    interface RouteRevenue extends RevenueTotal {
+        String getRouteName();
+    }
+
+    interface InstallmentRevenue extends RevenueTotal {
+        int getInstallmentNumber();
+    }
+
+    interface DailyRevenue extends RevenueTotal {
+        LocalDate getDay();
+    }
+}
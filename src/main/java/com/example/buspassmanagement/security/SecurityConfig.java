@@ -37,7 +37,8 @@ public class SecurityConfig {
                     "/css/**", 
                     "/js/**", 
                     "/images/**", 
-                    "/animations/**"
+                    "/animations/**",
+                    "/payments/webhook"
                 ).permitAll()
                 
                 .requestMatchers(
@@ -46,6 +47,11 @@ public class SecurityConfig {
                     "/buses/edit/**", 
                     "/buses/delete/**",
                     "/payments/delete/**",
+                    "/payments/rebuild-pass-status",
+                    "/payments/export",
+                    "/payments/gateway/stats",
+                    "/payments/reconcile",
+                    "/payments/reconcile/**",
                     "/drivers/add",
                     "/notices/add",
                     "/notices/delete/**",
@@ -54,12 +60,21 @@ public class SecurityConfig {
                     "/faq/edit/**",
                     "/faq/delete/**",
                     "/route-installments",
-                    "/route-installments/**"
+                    "/route-installments/**",
+                    "/revenue",
+                    "/revenue/**",
+                    "/pass/verify",
+                    "/pass/gate-check",
+                    "/pass/qr/prerender",
+                    "/pass/renew",
+                    "/pass/changes",
+                    "/boarding/**"
                 ).hasAuthority("ROLE_ADMIN")
                 
                 .requestMatchers(
                     "/buses", 
                     "/drivers",
+                    "/drivers/photos/**",
                     "/faq", 
                     "/track",
                     "/payments", 
@@ -69,6 +84,7 @@ public class SecurityConfig {
                     "/payments/pay-all-installments",
                     "/notices", 
                     "/pass", 
+                    "/pass/qr.png",
                     "/profile/**"
                 ).hasAnyAuthority("ROLE_USER", "ROLE_ADMIN")
 
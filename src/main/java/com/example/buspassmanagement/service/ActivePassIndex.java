@@ -0,0 +1,170 @@
+package com.example.buspassmanagement.service;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.buspassmanagement.model.BusPass;
+import com.example.buspassmanagement.repository.BusPassRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-memory index of the active bus passes on each route, for boarding gate checks.
+ *
+ * Each route holds a bitset over pass IDs (IDs are dense auto-increment values, so
+ * this takes one bit per pass up to the highest active ID on the route). The index is
+ * bulk-loaded at startup with the passes valid today and updated after each activation,
+ * deactivation, route change, expiry or renewal commits, so it only ever holds the
+ * current term's passes. Lookups take no locks and do not touch the
+ * database; writers are rare and serialise per route.
+ */
+@Service
+public class ActivePassIndex {
+
+    public enum GateOutcome { ALLOWED, MALFORMED, BAD_SIGNATURE, EXPIRED, REVOKED, NOT_ACTIVE_ON_ROUTE }
+
+    @Autowired
+    private BusPassRepository busPassRepository;
+
+    @Autowired
+    private PassTokenService passTokenService;
+
+    private final Map<String, PassBitSet> activeByRoute = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void load() {
+        long started = System.nanoTime();
+        int loaded = 0;
+        for (BusPassRepository.PassRoute pass
+                : busPassRepository.findRoutesByStatusValidOn(BusPass.PassStatus.ACTIVE, LocalDate.now())) {
+            if (pass.getSelectedRoute() != null) {
+                routeSet(pass.getSelectedRoute()).set(pass.getId(), true);
+                loaded++;
+            }
+        }
+        System.out.println("Active pass index: loaded " + loaded + " passes on " + activeByRoute.size()
+            + " routes in " + (System.nanoTime() - started) / 1_000_000 + " ms.");
+    }
+
+    /**
+     * Whether the pass is currently active on the route
+     */
+    public boolean isActive(String routeName, long passId) {
+        PassBitSet passes = routeName == null ? null : activeByRoute.get(routeName);
+        return passes != null && passes.get(passId);
+    }
+
+    /**
+     * Gate check for a scanned pass token on a bus serving the given route. The token
+     * proves which pass it is; whether that pass may board comes from the live index,
+     * so activations after the token was issued count and deactivations apply at once.
+     */
+    public GateCheck check(String token, String routeName) {
+        PassTokenService.Verification verification = passTokenService.verify(token);
+        GateOutcome outcome = switch (verification.outcome) {
+            case MALFORMED -> GateOutcome.MALFORMED;
+            case BAD_SIGNATURE -> GateOutcome.BAD_SIGNATURE;
+            case EXPIRED -> GateOutcome.EXPIRED;
+            case REVOKED -> GateOutcome.REVOKED;
+            case VALID, INACTIVE -> isActive(routeName, verification.passId)
+                ? GateOutcome.ALLOWED : GateOutcome.NOT_ACTIVE_ON_ROUTE;
+        };
+        return new GateCheck(outcome, verification.passId, routeName);
+    }
+
+    /**
+     * Add a pass to a route once the surrounding transaction commits
+     */
+    public void passActivated(long passId, String routeName) {
+        afterCommit(() -> {
+            if (routeName != null) {
+                routeSet(routeName).set(passId, true);
+            }
+        });
+    }
+
+    /**
+     * Remove a pass from a route once the surrounding transaction commits
+     */
+    public void passDeactivated(long passId, String routeName) {
+        afterCommit(() -> {
+            PassBitSet passes = routeName == null ? null : activeByRoute.get(routeName);
+            if (passes != null) {
+                passes.set(passId, false);
+            }
+        });
+    }
+
+    private PassBitSet routeSet(String routeName) {
+        return activeByRoute.computeIfAbsent(routeName, r -> new PassBitSet());
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    /**
+     * Growable bitset with lock-free reads. Writers synchronise, so growing (copying
+     * the words into a larger array) never loses a concurrent update.
+     */
+    private static class PassBitSet {
+        private volatile AtomicLongArray words = new AtomicLongArray(64);
+
+        boolean get(long id) {
+            AtomicLongArray current = words;
+            long word = id >>> 6;
+            return id >= 0 && word < current.length() && (current.get((int) word) & (1L << id)) != 0;
+        }
+
+        synchronized void set(long id, boolean active) {
+            int word = Math.toIntExact(id >>> 6);
+            AtomicLongArray current = words;
+            if (word >= current.length()) {
+                if (!active) {
+                    return;
+                }
+                AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                words = grown;
+                current = grown;
+            }
+            long bit = 1L << id;
+            current.set(word, active ? current.get(word) | bit : current.get(word) & ~bit);
+        }
+    }
+
+    /**
+     * Result of a gate check
+     */
+    public static class GateCheck {
+        public final GateOutcome outcome;
+        public final boolean allowed;
+        public final Long passId;
+        public final String route;
+
+        GateCheck(GateOutcome outcome, Long passId, String route) {
+            this.outcome = outcome;
+            this.allowed = outcome == GateOutcome.ALLOWED;
+            this.passId = passId;
+            this.route = route;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.buspassmanagement.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Local content-addressed store for binary files such as driver photos.
+ *
+ * A blob is stored once under the SHA-256 of its bytes (root/ab/abcdef...), so the key
+ * doubles as a strong ETag and identical uploads share one file. Blobs are streamed to
+ * a temporary file while hashing and then moved into place, so they never need to be
+ * held in memory and readers never see a partial file.
+ */
+@Service
+public class BlobStore {
+
+    private final Path root;
+
+    public BlobStore(@Value("${storage.blob-dir:data/blobs}") String root) {
+        this.root = Paths.get(root);
+    }
+
+    /**
+     * Store the stream's bytes and return their key
+     */
+    public String put(InputStream in) throws IOException {
+        Files.createDirectories(root);
+        Path temp = Files.createTempFile(root, "blob-", ".tmp");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (DigestInputStream hashing = new DigestInputStream(in, digest);
+                 OutputStream out = Files.newOutputStream(temp)) {
+                hashing.transferTo(out);
+            }
+            String key = HexFormat.of().formatHex(digest.digest());
+            Path file = pathOf(key);
+            if (!Files.exists(file)) {
+                Files.createDirectories(file.getParent());
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return key;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available.", e);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * File of a stored blob, or null if the key is malformed or unknown
+     */
+    public Path find(String key) {
+        if (key == null || !key.matches("[0-9a-f]{64}")) {
+            return null;
+        }
+        Path file = pathOf(key);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    private Path pathOf(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.buspassmanagement.service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Ingests boarding taps (pass scans) without blocking request threads.
+ *
+ * Taps go into a bounded queue: a ConcurrentLinkedQueue whose capacity is enforced by
+ * reserving slots on an atomic counter, so producers never take a lock. When the queue
+ * is full the taps are refused and the caller is told to retry (backpressure). A single
+ * writer thread drains the queue and inserts into boarding_events with JDBC batches
+ * (rewritten into multi-row INSERTs by Connector/J). A failed batch is kept and retried,
+ * so while the database is unavailable the queue fills and producers are pushed back
+ * rather than taps being lost.
+ */
+@Service
+public class BoardingEventService {
+
+    private static final String INSERT_SQL = "INSERT INTO boarding_events (pass_id, bus_id, tapped_at) VALUES (?, ?, ?)";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long RETRY_BACKOFF_MILLIS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int capacity;
+    private final int batchSize;
+
+    private final ConcurrentLinkedQueue<Tap> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public BoardingEventService(DataSource dataSource,
+                                @Value("${boarding.ingest.queue-capacity:100000}") int capacity,
+                                @Value("${boarding.ingest.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        writer = new Thread(this::writeLoop, "boarding-event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        // The writer drains what is left in the queue before it exits
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Queue a batch of taps, all or nothing. Returns false if the queue has no room
+     * for the whole batch; the caller should retry later.
+     */
+    public boolean submit(List<Tap> taps) {
+        int count = taps.size();
+        if (count == 0) {
+            return true;
+        }
+        for (;;) {
+            int current = queued.get();
+            if (current + count > capacity) {
+                rejected.add(count);
+                return false;
+            }
+            if (queued.compareAndSet(current, current + count)) {
+                break;
+            }
+        }
+        queue.addAll(taps);
+        accepted.add(count);
+        if (queued.get() >= batchSize) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * Queue depth and ingestion counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queued.get());
+        stats.put("capacity", capacity);
+        stats.put("accepted", accepted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("written", written.sum());
+        stats.put("failedBatches", failedBatches.sum());
+        return stats;
+    }
+
+    private void writeLoop() {
+        List<Tap> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            if (batch.isEmpty()) {
+                Tap tap;
+                while (batch.size() < batchSize && (tap = queue.poll()) != null) {
+                    batch.add(tap);
+                }
+            }
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            try {
+                insert(batch);
+                // Slots are released only once the taps are stored, so the capacity bounds everything in flight
+                queued.addAndGet(-batch.size());
+                written.add(batch.size());
+                batch.clear();
+            } catch (Exception e) {
+                failedBatches.increment();
+                System.err.println("ERROR writing " + batch.size() + " boarding events, will retry: " + e.getMessage());
+                if (!running) {
+                    System.err.println("Dropping " + (batch.size() + queue.size()) + " boarding events on shutdown.");
+                    return;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RETRY_BACKOFF_MILLIS));
+            }
+        }
+    }
+
+    private void insert(List<Tap> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, tap) -> {
+            ps.setLong(1, tap.passId);
+            ps.setLong(2, tap.busId);
+            ps.setTimestamp(3, Timestamp.valueOf(tap.tappedAt));
+        });
+    }
+
+    /**
+     * One pass scan at boarding
+     */
+    public static class Tap {
+        public final long passId;
+        public final long busId;
+        public final LocalDateTime tappedAt;
+
+        public Tap(long passId, long busId, LocalDateTime tappedAt) {
+            this.passId = passId;
+            this.busId = busId;
+            this.tappedAt = tappedAt;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.buspassmanagement.service;
 
+import java.time.LocalDate;
+import java.util.Objects;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,15 +9,43 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.buspassmanagement.model.BusPass;
+import com.example.buspassmanagement.model.Payment;
 import com.example.buspassmanagement.model.User;
 import com.example.buspassmanagement.repository.BusPassRepository;
+import com.example.buspassmanagement.repository.PaymentRepository;
 
 @Service
 public class BusPassService {
 
+    private static final int REBUILD_CHUNK_SIZE = 1000;
+
     @Autowired
     private BusPassRepository busPassRepository;
 
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private OptimisticRetryExecutor retryExecutor;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private PassQrCodeService passQrCodeService;
+
+    @Autowired
+    private PassTokenService passTokenService;
+
+    @Autowired
+    private ActivePassIndex activePassIndex;
+
+    @Autowired
+    private PassValidityService passValidityService;
+
+    @Autowired
+    private PassChangeFeedService passChangeFeedService;
+
     /**
      * Get or create bus pass for user
      */
@@ -53,33 +83,109 @@ public class BusPassService {
     }
 
     /**
-     * Set selected route for user's bus pass
+     * Set selected route for user's bus pass (retried on concurrent update).
+     * Unpaid installments generated for the previous route are removed in the same transaction.
      */
-    @Transactional
     public void setSelectedRoute(User user, String routeName) {
-        BusPass busPass = getOrCreateBusPass(user);
-        busPass.setSelectedRoute(routeName);
-        busPassRepository.save(busPass);
+        retryExecutor.run(() -> {
+            BusPass busPass = getOrCreateBusPass(user);
+            String previousRoute = busPass.getSelectedRoute();
+            boolean routeChanged = !Objects.equals(previousRoute, routeName);
+            if (routeChanged && previousRoute != null) {
+                // A charge in flight would settle against a route the pass no longer has
+                if (paymentRepository.existsAwaitingSettlement(user, previousRoute, Payment.PaymentStatus.PAID)) {
+                    throw new IllegalStateException("A payment for your current route is still being processed. "
+                        + "Please wait for it to be confirmed before changing routes.");
+                }
+                paymentRepository.deleteUnsubmittedForRoute(user, previousRoute, PaymentService.OUTSTANDING_STATUSES);
+            }
+            if (routeChanged) {
+                // Paid installments are tracked per route, so a new route starts empty
+                busPass.setPaidInstallmentMask(0);
+                passTokenService.revoke(busPass);
+                passQrCodeService.invalidate(user.getId());
+                if (busPass.isActive()) {
+                    activePassIndex.passDeactivated(busPass.getId(), busPass.getSelectedRoute());
+                    activePassIndex.passActivated(busPass.getId(), routeName);
+                }
+            }
+            busPass.setSelectedRoute(routeName);
+            busPassRepository.save(busPass);
+            if (routeChanged && busPass.isActive()) {
+                passChangeFeedService.record(busPass);
+            }
+        });
     }
 
     /**
-     * Activate bus pass for user
+     * Store the paid-installment mask recomputed from the payments ledger (retried on concurrent update)
+     */
+    public BusPass updateInstallmentMask(User user, int mask) {
+        return retryExecutor.execute(() -> {
+            BusPass busPass = getOrCreateBusPass(user);
+            busPass.setPaidInstallmentMask(mask);
+            return busPassRepository.save(busPass);
+        });
+    }
+
+    /**
+     * Repair job: recompute the paid-installment mask of every pass from the ledger.
+     * Works through the table in ID ranges, each committed separately, so it can
+     * run on a live system without holding locks on the whole passes table.
+     * Returns the number of passes updated.
+     */
+    public int rebuildInstallmentMasks() {
+        long maxId = busPassRepository.findMaxId();
+        int updated = 0;
+        for (long fromId = 1; fromId <= maxId; fromId += REBUILD_CHUNK_SIZE) {
+            long toId = Math.min(fromId + REBUILD_CHUNK_SIZE - 1, maxId);
+            updated += busPassRepository.rebuildInstallmentMasks(fromId, toId, Payment.PaymentStatus.PAID);
+        }
+        System.out.println("Rebuilt paid-installment masks for " + updated + " bus passes.");
+        return updated;
+    }
+
+    /**
+     * Activate bus pass for user (retried on concurrent update)
      */
-    @Transactional
     public void activatePass(User user) {
-        BusPass busPass = getOrCreateBusPass(user);
-        busPass.activate();
-        busPassRepository.save(busPass);
+        retryExecutor.run(() -> {
+            BusPass busPass = getOrCreateBusPass(user);
+            boolean wasActive = busPass.isActive();
+            if (!wasActive) {
+                // Each activation starts a new validity window
+                busPass.activate(LocalDate.now(), passValidityService.validUntilFor(busPass.getSelectedRoute()));
+            }
+            busPassRepository.save(busPass);
+            if (!wasActive) {
+                // Notifications and other follow-ups run after commit via the outbox
+                outboxService.passActivated(user, busPass.getSelectedRoute());
+                passQrCodeService.invalidate(user.getId());
+                activePassIndex.passActivated(busPass.getId(), busPass.getSelectedRoute());
+                passChangeFeedService.record(busPass);
+            }
+        });
     }
 
     /**
-     * Deactivate bus pass for user
+     * Deactivate bus pass for user (retried on concurrent update)
      */
-    @Transactional
     public void deactivatePass(User user) {
-        BusPass busPass = getOrCreateBusPass(user);
-        busPass.deactivate();
-        busPassRepository.save(busPass);
+        retryExecutor.run(() -> {
+            BusPass busPass = getOrCreateBusPass(user);
+            boolean wasActive = busPass.isActive();
+            if (wasActive) {
+                // Tokens issued while active must stop verifying
+                passTokenService.revoke(busPass);
+                activePassIndex.passDeactivated(busPass.getId(), busPass.getSelectedRoute());
+            }
+            busPass.deactivate();
+            busPassRepository.save(busPass);
+            passQrCodeService.invalidate(user.getId());
+            if (wasActive) {
+                passChangeFeedService.record(busPass);
+            }
+        });
     }
 
     /**
@@ -0,0 +1,70 @@
+package com.example.buspassmanagement.service;
+
+import java.io.ByteArrayInputStream;
+import java.util.Base64;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-off migration of driver photos from base64 text in drivers.image to the blob store.
+ *
+ * Runs once the application is up, a row at a time: the photo is decoded straight into
+ * the blob store, then the row gets the blob key and its base64 copy is cleared in one
+ * UPDATE. Rows already moved are skipped, so an interrupted run simply completes on the
+ * next start, and once drivers.image is dropped there is nothing left to do.
+ */
+@Component
+public class DriverPhotoMigration {
+
+    @Autowired
+    private BlobStore blobStore;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DriverPhotoMigration(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!columnExists("drivers", "image")) {
+            return;
+        }
+
+        List<Long> ids = jdbcTemplate.queryForList(
+            "SELECT id FROM drivers WHERE image IS NOT NULL AND image_key IS NULL", Long.class);
+        int moved = 0;
+        for (Long id : ids) {
+            try {
+                String image = jdbcTemplate.queryForObject("SELECT image FROM drivers WHERE id = ?", String.class, id);
+                String key = null;
+                if (image != null && !image.isBlank()) {
+                    key = blobStore.put(new ByteArrayInputStream(Base64.getMimeDecoder().decode(image)));
+                }
+                jdbcTemplate.update("UPDATE drivers SET image_key = ?, image = NULL WHERE id = ?", key, id);
+                moved++;
+            } catch (Exception e) {
+                System.err.println("ERROR moving photo of driver " + id + " to the blob store: " + e.getMessage());
+            }
+        }
+
+        if (!ids.isEmpty()) {
+            System.out.println("Driver photo migration: " + moved + " of " + ids.size() + " photos moved to the blob store.");
+        }
+    }
+
+    private boolean columnExists(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM information_schema.COLUMNS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?",
+            Integer.class, table, column);
+        return count != null && count > 0;
+    }
+}
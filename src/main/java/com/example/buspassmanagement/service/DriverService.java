@@ -1,10 +1,21 @@
 package com.example.buspassmanagement.service;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
 
 import com.example.buspassmanagement.model.Driver;
 import com.example.buspassmanagement.repository.DriverRepository;
@@ -15,6 +26,12 @@ public class DriverService {
     @Autowired
     private DriverRepository driverRepository;
 
+    @Autowired
+    private BlobStore blobStore;
+
+    @Value("${drivers.photo.max-bytes:5242880}")
+    private long maxPhotoBytes;
+
     public List<Driver> findAllDrivers() {
         return driverRepository.findAll();
     }
@@ -34,5 +51,53 @@ public class DriverService {
     public void deleteDriver(Long id) {
         driverRepository.deleteById(id);
     }
+
+    /**
+     * Store an uploaded driver photo (PNG or JPEG) in the blob store and return its key
+     */
+    public String storePhoto(MultipartFile imageFile) throws IOException {
+        if (imageFile.getSize() > maxPhotoBytes) {
+            throw new IllegalArgumentException("The photo must be at most " + (maxPhotoBytes / (1024 * 1024)) + " MB.");
+        }
+        try (InputStream in = new BufferedInputStream(imageFile.getInputStream())) {
+            in.mark(8);
+            byte[] head = in.readNBytes(8);
+            in.reset();
+            if (photoContentType(head) == null) {
+                throw new IllegalArgumentException("The photo must be a PNG or JPEG image.");
+            }
+            return blobStore.put(in);
+        }
+    }
+
+    /**
+     * Stored photo file for a key, or null if there is none
+     */
+    public Path findPhoto(String key) {
+        return blobStore.find(key);
+    }
+
+    /**
+     * Media type of a stored photo, from its leading bytes
+     */
+    public MediaType photoContentType(Path photo) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(8);
+        try (FileChannel channel = FileChannel.open(photo, StandardOpenOption.READ)) {
+            channel.read(head, 0);
+        }
+        MediaType type = photoContentType(Arrays.copyOf(head.array(), head.position()));
+        return type != null ? type : MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    // PNG and JPEG signatures
+    private static MediaType photoContentType(byte[] head) {
+        if (head.length >= 8 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G') {
+            return MediaType.IMAGE_PNG;
+        }
+        if (head.length >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) {
+            return MediaType.IMAGE_JPEG;
+        }
+        return null;
+    }
 }
 
@@ -0,0 +1,54 @@
+package com.example.buspassmanagement.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * HMAC-SHA256 signatures for payment gateway webhook callbacks, so the webhook
+ * endpoint only accepts settlements from the gateway holding the shared secret.
+ * The secret comes from the environment (PAYMENTS_WEBHOOK_SECRET); startup fails
+ * without one.
+ */
+@Component
+public class GatewayWebhookSigner {
+
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    private final SecretKeySpec key;
+
+    public GatewayWebhookSigner(@Value("${payments.gateway.webhook-secret}") String secret) {
+        if (secret == null || secret.length() < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("payments.gateway.webhook-secret (PAYMENTS_WEBHOOK_SECRET) must be set to at least "
+                + MIN_SECRET_LENGTH + " characters.");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+    }
+
+    public String sign(String reference, String status) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            byte[] digest = mac.doFinal((reference + ":" + status).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("Could not sign webhook payload.", e);
+        }
+    }
+
+    public boolean verify(String reference, String status, String signature) {
+        if (signature == null) {
+            return false;
+        }
+        byte[] expected = sign(reference, status).getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.buspassmanagement.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Service;
+
+/**
+ * Bounded in-memory cache of request results keyed by an idempotency key.
+ *
+ * The first request with a key runs the action; concurrent or later requests with
+ * the same key wait for and return that first result instead of running it again.
+ * Entries expire after a while and the oldest ones are evicted once the cache is full.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_ENTRIES = 10_000;
+    private static final Duration TTL = Duration.ofMinutes(15);
+    private static final long WAIT_SECONDS = 30;
+
+    private static class Entry {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        final Instant expiresAt = Instant.now().plus(TTL);
+    }
+
+    // Insertion-ordered, so the eldest entry is also the one that expires first
+    private final Map<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES || Instant.now().isAfter(eldest.getValue().expiresAt);
+        }
+    };
+
+    /**
+     * Run the action once per key and return its result to every caller using that key.
+     * If the action throws, the key is released so a retry can run it again.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> action) {
+        Entry entry;
+        boolean owner;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && Instant.now().isAfter(entry.expiresAt)) {
+                entries.remove(key);
+                entry = null;
+            }
+            owner = (entry == null);
+            if (owner) {
+                entry = new Entry();
+                entries.put(key, entry);
+            }
+        }
+
+        if (owner) {
+            try {
+                T result = action.get();
+                entry.result.complete(result);
+                return result;
+            } catch (RuntimeException e) {
+                synchronized (entries) {
+                    entries.remove(key, entry);
+                }
+                entry.result.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return (T) entry.result.get(WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Original request failed.", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("The original request is still being processed. Please refresh shortly.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the original request.");
+        }
+    }
+}
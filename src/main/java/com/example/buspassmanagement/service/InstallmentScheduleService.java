@@ -0,0 +1,251 @@
+package com.example.buspassmanagement.service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.buspassmanagement.model.RouteInstallment;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Generates the PENDING installment payments for every student on a route.
+ * Runs in the background after an admin saves a route installment configuration,
+ * walking the route's bus passes in chunks and inserting the missing rows with
+ * JDBC batch inserts, one transaction per chunk.
+ */
+@Service
+public class InstallmentScheduleService {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // One job at a time; a second save of the same route simply finds nothing left to insert
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "installment-schedule");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, GenerationProgress> progressByRoute = new ConcurrentHashMap<>();
+
+    /**
+     * Queue schedule generation for a route and return its progress tracker
+     */
+    public GenerationProgress startGeneration(RouteInstallment routeInstallment) {
+        GenerationProgress progress = new GenerationProgress(routeInstallment.getRouteName());
+        progressByRoute.put(routeInstallment.getRouteName(), progress);
+        executor.submit(() -> {
+            try {
+                generate(routeInstallment, progress);
+            } catch (Exception e) {
+                progress.fail(e.getMessage());
+                System.err.println("ERROR generating installment schedule for route "
+                    + routeInstallment.getRouteName() + ": " + e.getMessage());
+            }
+        });
+        return progress;
+    }
+
+    /**
+     * Latest generation progress per route name
+     */
+    public Map<String, GenerationProgress> getProgress() {
+        return progressByRoute;
+    }
+
+    /**
+     * Create the missing PENDING installments for every bus pass on the route.
+     * Existing PENDING rows are re-priced to the current configuration first.
+     */
+    public void generate(RouteInstallment routeInstallment, GenerationProgress progress) {
+        String routeName = routeInstallment.getRouteName();
+        LocalDate[] deadlines = {
+            routeInstallment.getInstallment1Deadline(),
+            routeInstallment.getInstallment2Deadline(),
+            routeInstallment.getInstallment3Deadline()
+        };
+        long[] amounts = {
+            routeInstallment.getInstallment1AmountPaise(),
+            routeInstallment.getInstallment2AmountPaise(),
+            routeInstallment.getInstallment3AmountPaise()
+        };
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        // Keep unpaid rows in line with the (possibly edited) configuration; rows already
+        // submitted to the gateway keep the amount that was charged
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < 3; i++) {
+                jdbcTemplate.update(
+                    "UPDATE payments SET amount_paise = ?, due_date = ?, version = version + 1 " +
+                    "WHERE route_name = ? AND installment_number = ? AND status = 'PENDING' AND gateway_reference IS NULL",
+                    amounts[i], Date.valueOf(deadlines[i]), routeName, i + 1);
+            }
+        });
+
+        Long totalPasses = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM passes WHERE selected_route = ?", Long.class, routeName);
+        progress.start(totalPasses != null ? totalPasses : 0L);
+
+        long lastPassId = 0L;
+        while (true) {
+            List<long[]> passes = jdbcTemplate.query(
+                "SELECT id, user_id FROM passes WHERE selected_route = ? AND id > ? ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new long[] { rs.getLong("id"), rs.getLong("user_id") },
+                routeName, lastPassId, CHUNK_SIZE);
+            if (passes.isEmpty()) {
+                break;
+            }
+            lastPassId = passes.get(passes.size() - 1)[0];
+
+            Integer created = tx.execute(status -> insertChunk(routeName, passes, amounts, deadlines));
+            progress.advance(passes.size(), created != null ? created : 0);
+        }
+
+        progress.complete();
+        System.out.println("Installment schedule for route " + routeName + ": created "
+            + progress.getCreatedPayments() + " pending payments for " + progress.getProcessedPasses() + " passes.");
+    }
+
+    private int insertChunk(String routeName, List<long[]> passes, long[] amounts, LocalDate[] deadlines) {
+        List<Long> userIds = new ArrayList<>(passes.size());
+        for (long[] pass : passes) {
+            userIds.add(pass[1]);
+        }
+
+        // Installments already on the ledger for these users; a full payment covers all three
+        Set<Long> existing = new HashSet<>();
+        Set<Long> fullyPaidUsers = new HashSet<>();
+        namedParameterJdbcTemplate.query(
+            "SELECT user_id, installment_number, is_full_payment FROM payments " +
+            "WHERE route_name = :routeName AND user_id IN (:userIds) AND status <> 'CANCELLED'",
+            new MapSqlParameterSource()
+                .addValue("routeName", routeName)
+                .addValue("userIds", userIds),
+            rs -> {
+                long userId = rs.getLong("user_id");
+                if (rs.getBoolean("is_full_payment")) {
+                    fullyPaidUsers.add(userId);
+                } else {
+                    int installment = rs.getInt("installment_number");
+                    if (!rs.wasNull()) {
+                        existing.add(userId * 4 + installment);
+                    }
+                }
+            });
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Long userId : userIds) {
+            if (fullyPaidUsers.contains(userId)) {
+                continue;
+            }
+            for (int installment = 1; installment <= 3; installment++) {
+                if (!existing.contains(userId * 4 + installment)) {
+                    rows.add(new Object[] {
+                        userId, routeName, installment, amounts[installment - 1],
+                        Date.valueOf(deadlines[installment - 1])
+                    });
+                }
+            }
+        }
+
+        if (!rows.isEmpty()) {
+            // Rows a student paid concurrently hit the unique user/route/installment key and are
+            // left as they are; unlike INSERT IGNORE, any other error still fails the chunk
+            jdbcTemplate.batchUpdate(
+                "INSERT INTO payments (user_id, route_name, installment_number, amount_paise, due_date, status, is_full_payment, version) " +
+                "VALUES (?, ?, ?, ?, ?, 'PENDING', false, 0) ON DUPLICATE KEY UPDATE id = id",
+                rows);
+        }
+        return rows.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Progress of one schedule generation run
+     */
+    public static class GenerationProgress {
+        public enum State { QUEUED, RUNNING, COMPLETED, FAILED }
+
+        private final String routeName;
+        private final AtomicLong processedPasses = new AtomicLong();
+        private final AtomicLong createdPayments = new AtomicLong();
+        private volatile long totalPasses;
+        private volatile State state = State.QUEUED;
+        private volatile String errorMessage;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+
+        GenerationProgress(String routeName) {
+            this.routeName = routeName;
+        }
+
+        void start(long totalPasses) {
+            this.totalPasses = totalPasses;
+            this.startedAt = LocalDateTime.now();
+            this.state = State.RUNNING;
+        }
+
+        void advance(long passes, long payments) {
+            processedPasses.addAndGet(passes);
+            createdPayments.addAndGet(payments);
+        }
+
+        void complete() {
+            this.finishedAt = LocalDateTime.now();
+            this.state = State.COMPLETED;
+        }
+
+        void fail(String message) {
+            this.errorMessage = message;
+            this.finishedAt = LocalDateTime.now();
+            this.state = State.FAILED;
+        }
+
+        public String getRouteName() { return routeName; }
+        public long getProcessedPasses() { return processedPasses.get(); }
+        public long getCreatedPayments() { return createdPayments.get(); }
+        public long getTotalPasses() { return totalPasses; }
+        public State getState() { return state; }
+        public String getErrorMessage() { return errorMessage; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+
+        public int getPercentComplete() {
+            if (state == State.COMPLETED) {
+                return 100;
+            }
+            return totalPasses == 0 ? 0 : (int) (processedPasses.get() * 100 / totalPasses);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.buspassmanagement.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.example.buspassmanagement.model.Payment;
+
+/**
+ * Default gateway: every charge succeeds immediately, so payments are PAID
+ * within the checkout request.
+ */
+@Service
+@ConditionalOnProperty(name = "payments.gateway.provider", havingValue = "instant", matchIfMissing = true)
+public class InstantPaymentGateway implements PaymentGateway {
+
+    @Override
+    public ChargeResult charge(Payment payment, String idempotencyKey) {
+        // Same key, same reference: a retried transaction records the same charge
+        return new ChargeResult("instant-" + idempotencyKey, true);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.buspassmanagement.service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.buspassmanagement.model.Payment;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-process stand-in for a real payment provider, for load-testing the asynchronous flow.
+ *
+ * Charges are accepted immediately and settled after a configurable delay by POSTing a
+ * signed callback to the webhook endpoint over HTTP, like a real provider would. A
+ * configurable share of charges fail. Charges are deduplicated by idempotency key until
+ * the transaction that records them commits, so a retried transaction gets the charge it
+ * already made and only one callback is sent. Counters for charges, callbacks and the
+ * charge-to-settlement latency are exposed through getStats().
+ */
+@Service
+@ConditionalOnProperty(name = "payments.gateway.provider", havingValue = "mock")
+public class MockPaymentGateway implements PaymentGateway {
+
+    private static final int MAX_CALLBACK_ATTEMPTS = 3;
+    // Charges whose transaction never committed (rolled back for good) are dropped after this
+    private static final long STALE_CHARGE_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    @Value("${payments.gateway.mock.settle-delay-ms:2000}")
+    private long settleDelayMillis;
+
+    @Value("${payments.gateway.mock.failure-rate:0.0}")
+    private double failureRate;
+
+    @Value("${payments.gateway.mock.webhook-url:http://localhost:${server.port:8080}/payments/webhook}")
+    private String webhookUrl;
+
+    @Autowired
+    private GatewayWebhookSigner signer;
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "mock-gateway");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+        .executor(Executors.newVirtualThreadPerTaskExecutor())
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+
+    // Charges not yet committed, by idempotency key
+    private final Map<String, MockCharge> pendingCharges = new ConcurrentHashMap<>();
+
+    private final AtomicLong chargesAccepted = new AtomicLong();
+    private final AtomicLong callbacksDelivered = new AtomicLong();
+    private final AtomicLong callbacksFailed = new AtomicLong();
+    private final LongAdder totalSettleMillis = new LongAdder();
+    private final AtomicLong maxSettleMillis = new AtomicLong();
+
+    @Override
+    public ChargeResult charge(Payment payment, String idempotencyKey) {
+        long now = System.nanoTime();
+        pendingCharges.values().removeIf(charge -> now - charge.acceptedAt > STALE_CHARGE_NANOS);
+        MockCharge charge = pendingCharges.computeIfAbsent(idempotencyKey, key -> {
+            chargesAccepted.incrementAndGet();
+            String status = ThreadLocalRandom.current().nextDouble() < failureRate ? "FAILED" : "SUCCEEDED";
+            return new MockCharge("mock-" + UUID.randomUUID(), status, now);
+        });
+
+        // Only start the settlement clock once the PENDING payment is committed and visible,
+        // and only for the first attempt that commits
+        Runnable schedule = () -> {
+            if (pendingCharges.remove(idempotencyKey, charge)) {
+                scheduler.schedule(() -> sendCallback(charge.reference, charge.status, charge.acceptedAt, 1),
+                    settleDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedule.run();
+                }
+            });
+        } else {
+            schedule.run();
+        }
+
+        return new ChargeResult(charge.reference, false);
+    }
+
+    private void sendCallback(String reference, String status, long acceptedAt, int attempt) {
+        String body = "{\"reference\":\"" + reference + "\",\"status\":\"" + status + "\"}";
+        HttpRequest request = HttpRequest.newBuilder(URI.create(webhookUrl))
+            .timeout(Duration.ofSeconds(10))
+            .header("Content-Type", "application/json")
+            .header("X-Gateway-Signature", signer.sign(reference, status))
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            if (error == null && response.statusCode() == 200) {
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - acceptedAt);
+                callbacksDelivered.incrementAndGet();
+                totalSettleMillis.add(millis);
+                maxSettleMillis.accumulateAndGet(millis, Math::max);
+            } else if (attempt < MAX_CALLBACK_ATTEMPTS) {
+                scheduler.schedule(() -> sendCallback(reference, status, acceptedAt, attempt + 1),
+                    settleDelayMillis * attempt, TimeUnit.MILLISECONDS);
+            } else {
+                callbacksFailed.incrementAndGet();
+                System.err.println("Mock gateway: giving up on callback for " + reference + ": "
+                    + (error != null ? error.getMessage() : "HTTP " + response.statusCode()));
+            }
+        });
+    }
+
+    /**
+     * Charge and callback counters since startup
+     */
+    public Map<String, Object> getStats() {
+        long delivered = callbacksDelivered.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("chargesAccepted", chargesAccepted.get());
+        stats.put("callbacksDelivered", delivered);
+        stats.put("callbacksFailed", callbacksFailed.get());
+        stats.put("avgSettleMillis", delivered == 0 ? 0 : totalSettleMillis.sum() / delivered);
+        stats.put("maxSettleMillis", maxSettleMillis.get());
+        stats.put("settleDelayMillis", settleDelayMillis);
+        stats.put("failureRate", failureRate);
+        return stats;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * A charge accepted by the mock gateway
+     */
+    private static class MockCharge {
+        final String reference;
+        final String status;
+        final long acceptedAt;
+
+        MockCharge(String reference, String status, long acceptedAt) {
+            this.reference = reference;
+            this.status = status;
+            this.acceptedAt = acceptedAt;
+        }
+    }
+}
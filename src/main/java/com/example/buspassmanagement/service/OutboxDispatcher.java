@@ -0,0 +1,161 @@
+package com.example.buspassmanagement.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.buspassmanagement.model.Money;
+import com.example.buspassmanagement.model.OutboxEvent;
+import com.example.buspassmanagement.model.User;
+import com.example.buspassmanagement.repository.OutboxEventRepository;
+import com.example.buspassmanagement.repository.UserRepository;
+
+/**
+ * Drains the outbox in batches and runs the post-payment side effects.
+ *
+ * Each poll locks a batch of due events, runs them concurrently on virtual threads,
+ * then marks the successes DONE in one statement. Failed events are retried with
+ * exponential backoff and marked FAILED after MAX_ATTEMPTS.
+ */
+@Service
+public class OutboxDispatcher {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int STALE_CLAIM_MINUTES = 5;
+    private static final int RETAIN_DONE_DAYS = 7;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public OutboxDispatcher(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Polls for due events (interval configurable via outbox.dispatch.delay-ms)
+     */
+    @Scheduled(fixedDelayString = "${outbox.dispatch.delay-ms:1000}")
+    public void dispatch() {
+        while (true) {
+            List<OutboxEvent> batch = claimBatch();
+            if (batch.isEmpty()) {
+                return;
+            }
+            process(batch);
+            if (batch.size() < BATCH_SIZE) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Daily clean-up of processed events
+     */
+    @Scheduled(cron = "${outbox.purge.cron:0 30 3 * * *}")
+    public void purge() {
+        int removed = transactionTemplate.execute(status -> outboxEventRepository.purge(
+            OutboxEvent.Status.DONE, LocalDateTime.now().minusDays(RETAIN_DONE_DAYS)));
+        System.out.println("Outbox purge: removed " + removed + " processed events.");
+    }
+
+    private List<OutboxEvent> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = outboxEventRepository.lockNextBatch(
+                now, now.minusMinutes(STALE_CLAIM_MINUTES), BATCH_SIZE);
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            outboxEventRepository.claim(ids, OutboxEvent.Status.PROCESSING, now);
+            return outboxEventRepository.findAllById(ids);
+        });
+    }
+
+    private void process(List<OutboxEvent> batch) {
+        Map<OutboxEvent, Future<?>> results = new LinkedHashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (OutboxEvent event : batch) {
+                results.put(event, executor.submit(() -> handle(event)));
+            }
+        }
+
+        List<Long> done = new ArrayList<>();
+        List<OutboxEvent> failed = new ArrayList<>();
+        for (Map.Entry<OutboxEvent, Future<?>> result : results.entrySet()) {
+            try {
+                result.getValue().get();
+                done.add(result.getKey().getId());
+            } catch (Exception e) {
+                Throwable cause = (e.getCause() != null ? e.getCause() : e);
+                String message = String.valueOf(cause.getMessage());
+                result.getKey().setLastError(message.length() > 500 ? message.substring(0, 500) : message);
+                failed.add(result.getKey());
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (!done.isEmpty()) {
+                outboxEventRepository.complete(done, OutboxEvent.Status.DONE, now);
+            }
+            for (OutboxEvent event : failed) {
+                event.setAttempts(event.getAttempts() + 1);
+                if (event.getAttempts() >= MAX_ATTEMPTS) {
+                    event.setStatus(OutboxEvent.Status.FAILED);
+                    event.setProcessedAt(now);
+                    System.err.println("Outbox event " + event.getId() + " failed permanently: " + event.getLastError());
+                } else {
+                    // 2s, 4s, 8s, ... before the next attempt
+                    event.setStatus(OutboxEvent.Status.PENDING);
+                    event.setAvailableAt(now.plusSeconds(1L << event.getAttempts()));
+                }
+                outboxEventRepository.save(event);
+            }
+        });
+    }
+
+    private void handle(OutboxEvent event) {
+        User user = userRepository.findById(event.getUserId())
+            .orElseThrow(() -> new IllegalStateException("User " + event.getUserId() + " no longer exists."));
+
+        switch (event.getEventType()) {
+            case PAYMENT_RECEIVED -> {
+                String what = (event.getInstallmentNumber() != null)
+                    ? "installment " + event.getInstallmentNumber()
+                    : "the full amount";
+                String route = (event.getRouteName() != null) ? " for route " + event.getRouteName() : "";
+                notificationService.sendEmail(user.getEmail(), "Payment received",
+                    "Hi " + user.getName() + ", we received your payment of ₹"
+                        + Money.format(event.getAmountPaise() != null ? event.getAmountPaise() : 0L)
+                        + " towards " + what + route + ".");
+            }
+            case PASS_ACTIVATED -> {
+                notificationService.sendEmail(user.getEmail(), "Your bus pass is active",
+                    "Hi " + user.getName() + ", your bus pass for route " + event.getRouteName()
+                        + " is now active. Open the Bus Pass page to view your QR code.");
+                notificationService.sendSms(user.getPhone(),
+                    "Your bus pass for route " + event.getRouteName() + " is now active.");
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.buspassmanagement.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.buspassmanagement.model.OutboxEvent;
+import com.example.buspassmanagement.model.User;
+import com.example.buspassmanagement.repository.OutboxEventRepository;
+
+/**
+ * Records side effects in the outbox table. Must be called inside the transaction
+ * that makes the change, so the event is committed (or rolled back) with it.
+ */
+@Service
+public class OutboxService {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    /**
+     * Record that a payment was received (installmentNumber null means full payment)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void paymentReceived(User user, String routeName, Integer installmentNumber, long amountPaise) {
+        OutboxEvent event = newEvent(OutboxEvent.EventType.PAYMENT_RECEIVED, user, routeName);
+        event.setInstallmentNumber(installmentNumber);
+        event.setAmountPaise(amountPaise);
+        outboxEventRepository.save(event);
+    }
+
+    /**
+     * Record that a user's bus pass became active
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void passActivated(User user, String routeName) {
+        outboxEventRepository.save(newEvent(OutboxEvent.EventType.PASS_ACTIVATED, user, routeName));
+    }
+
+    private OutboxEvent newEvent(OutboxEvent.EventType type, User user, String routeName) {
+        OutboxEvent event = new OutboxEvent();
+        event.setEventType(type);
+        event.setUserId(user.getId());
+        event.setRouteName(routeName);
+        return event;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.buspassmanagement.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.buspassmanagement.model.JobRun;
+import com.example.buspassmanagement.repository.JobRunRepository;
+import com.example.buspassmanagement.repository.PaymentRepository;
+
+/**
+ * Scheduled job that moves PENDING payments past their due date to OVERDUE.
+ *
+ * The work is done with chunked set-based UPDATE statements rather than by loading
+ * entities. Each statement only touches rows that are still PENDING, and InnoDB
+ * re-checks that condition under the row lock, so two app instances running the
+ * sweep at the same time never transition the same row twice; the second one
+ * simply finds fewer rows left to update.
+ */
+@Service
+public class OverduePaymentSweeper {
+
+    public static final String JOB_NAME = "overdue-payment-sweep";
+
+    private static final int CHUNK_SIZE = 1000;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private JobRunRepository jobRunRepository;
+
+    /**
+     * Runs daily shortly after midnight (configurable via payments.overdue-sweep.cron)
+     */
+    @Scheduled(cron = "${payments.overdue-sweep.cron:0 15 0 * * *}")
+    public void scheduledSweep() {
+        sweep(LocalDate.now());
+    }
+
+    /**
+     * Mark every PENDING payment due before the given date as OVERDUE.
+     * Records the run and returns the number of payments changed.
+     */
+    public long sweep(LocalDate today) {
+        JobRun run = new JobRun();
+        run.setJobName(JOB_NAME);
+        run.setStartedAt(LocalDateTime.now());
+
+        long total = 0;
+        try {
+            int updated;
+            do {
+                updated = paymentRepository.markOverdueChunk(today, CHUNK_SIZE);
+                total += updated;
+            } while (updated == CHUNK_SIZE);
+        } catch (Exception e) {
+            String message = String.valueOf(e.getMessage());
+            run.setErrorMessage(message.length() > 500 ? message.substring(0, 500) : message);
+            System.err.println("ERROR during overdue payment sweep: " + e.getMessage());
+        }
+
+        run.setRowsAffected(total);
+        run.setFinishedAt(LocalDateTime.now());
+        jobRunRepository.save(run);
+
+        System.out.println("Overdue payment sweep: " + total + " payments marked OVERDUE.");
+        return total;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.buspassmanagement.service;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.buspassmanagement.model.BusPass;
+import com.example.buspassmanagement.model.PassStatusChange;
+import com.example.buspassmanagement.repository.PassStatusChangeRepository;
+
+/**
+ * Change log of bus pass status transitions and the delta feed offline validators sync from.
+ *
+ * Every activation, deactivation, route change, expiry and renewal appends a row in the
+ * transaction that makes it; the row ID is the change version. A device asks for the
+ * changes after the last version it has and applies them in order.
+ *
+ * Auto-increment IDs are handed out before commit, so a slow transaction can commit a
+ * lower version after a higher one is visible, and a device that synced past it would
+ * never see it. The feed therefore only serves versions below every transaction still
+ * writing changes: a writer registers before its insert, with a floor below any ID it
+ * can be given (the highest committed version the feed has seen), and deregisters once
+ * its transaction completes. The feed caps each page at the highest committed version
+ * read before it looks at the open writers, and at the lowest open floor.
+ *
+ * The registry of open writers lives in this instance, so this assumes every pass status
+ * change is written through this service by a single application instance. Changes
+ * written elsewhere (another instance, a manual SQL fix) are not covered.
+ *
+ * Feed format (gzip'd, big-endian):
+ * header: format (1 byte) | last version included (8) | more pages follow (1) | count (4)
+ * change: version (8) | pass id (8) | status ordinal (1) | route id (4, 0 = none) | valid until epoch day (4, -1 = none)
+ */
+@Service
+public class PassChangeFeedService {
+
+    private static final byte FORMAT = 1;
+
+    @Autowired
+    private PassStatusChangeRepository passStatusChangeRepository;
+
+    @Autowired
+    private PassTokenService passTokenService;
+
+    @Value("${pass.change-feed.page-size:10000}")
+    private int pageSize;
+
+    // Open writer -> floor below any version it can be given
+    private final Map<Object, Long> openWriters = new ConcurrentHashMap<>();
+
+    // Highest committed version seen by the feed; IDs handed out later are always above it
+    private final AtomicLong committedVersion = new AtomicLong();
+
+    /**
+     * Record the current state of a pass after a status change
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(BusPass busPass) {
+        registerWriter();
+        passStatusChangeRepository.record(busPass.getId(), busPass.getStatus().name(),
+            busPass.getSelectedRoute(), busPass.getValidUntil(), LocalDateTime.now());
+    }
+
+    /**
+     * Record the current state of passes changed by a bulk update in the same transaction
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(Collection<Long> passIds) {
+        registerWriter();
+        passStatusChangeRepository.recordAll(passIds, LocalDateTime.now());
+    }
+
+    /**
+     * Write one page of changes after the given version to the stream in the feed format.
+     * Returns the last version written (the version to sync from next time).
+     *
+     * Read committed, so the page query sees every transaction that committed before the
+     * open writers were checked, not just those visible when the ceiling was read.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.READ_COMMITTED)
+    public long writeChangesSince(long since, OutputStream out) throws IOException {
+        long ceiling = servableVersion();
+        List<PassStatusChange> changes = passStatusChangeRepository.findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(
+            since, ceiling, Pageable.ofSize(pageSize + 1));
+        boolean more = changes.size() > pageSize;
+        if (more) {
+            changes = changes.subList(0, pageSize);
+        }
+        long lastVersion = changes.isEmpty() ? since : changes.get(changes.size() - 1).getId();
+        Map<String, Integer> routeIds = passTokenService.routeIds();
+
+        GZIPOutputStream gzip = new GZIPOutputStream(out, 8192);
+        DataOutputStream data = new DataOutputStream(gzip);
+        data.writeByte(FORMAT);
+        data.writeLong(lastVersion);
+        data.writeBoolean(more);
+        data.writeInt(changes.size());
+        for (PassStatusChange change : changes) {
+            data.writeLong(change.getId());
+            data.writeLong(change.getPassId());
+            data.writeByte(change.getStatus().ordinal());
+            data.writeInt(change.getRouteName() != null ? routeIds.getOrDefault(change.getRouteName(), 0) : 0);
+            data.writeInt(change.getValidUntil() != null ? (int) change.getValidUntil().toEpochDay() : -1);
+        }
+        data.flush();
+        gzip.finish();
+        return lastVersion;
+    }
+
+    /**
+     * Highest version every lower version of which is committed or will never exist
+     */
+    long servableVersion() {
+        Long committed = passStatusChangeRepository.findMaxId();
+        long ceiling = committed != null ? committed : 0;
+        committedVersion.accumulateAndGet(ceiling, Math::max);
+        for (Long floor : openWriters.values()) {
+            ceiling = Math.min(ceiling, floor);
+        }
+        return ceiling;
+    }
+
+    /**
+     * Hold the feed below this transaction's changes until it commits or rolls back.
+     * Must be called before the insert, so the floor is below the IDs it is given.
+     */
+    private void registerWriter() {
+        Object writer = new Object();
+        openWriters.put(writer, committedVersion.get());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                openWriters.remove(writer);
+            }
+        });
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.buspassmanagement.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+/**
+ * Renders bus pass QR codes and keeps the PNGs in a bounded in-memory cache.
+ *
+ * Entries are keyed by the SHA-256 of the QR text (the signed pass token), so a pass
+ * whose route or status changed simply gets a new key and can never be served a stale image.
+ * The cache is LRU, capped by total PNG bytes, and entries expire after a while.
+ * Passes are also invalidated explicitly on activation and route change so the
+ * superseded image does not linger until it ages out.
+ *
+ * PassQrPrerenderService can also render images ahead of time into an on-disk store,
+ * under the same key; stored images are served from disk without rendering.
+ */
+@Service
+public class PassQrCodeService {
+
+    public static final int QR_SIZE = 250;
+
+    private final long maxBytes;
+    private final Duration ttl;
+    private final Path storeDir;
+
+    private static class Entry {
+        final String key;
+        final Long userId;
+        final byte[] png;
+        final Instant expiresAt;
+
+        Entry(String key, Long userId, byte[] png, Instant expiresAt) {
+            this.key = key;
+            this.userId = userId;
+            this.png = png;
+            this.expiresAt = expiresAt;
+        }
+
+        long size() {
+            return png.length;
+        }
+    }
+
+    // Access-ordered, so the eldest entry is the least recently viewed
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    // Key of each cached user's QR image, for explicit invalidation
+    private final Map<Long, String> keyByUser = new HashMap<>();
+    private long totalBytes;
+
+    public PassQrCodeService(@Value("${pass.qr-cache.max-bytes:16777216}") long maxBytes,
+                             @Value("${pass.qr-cache.ttl-minutes:60}") long ttlMinutes,
+                             @Value("${pass.qr-store.dir:${java.io.tmpdir}/pass-qr}") String storeDir) {
+        this.maxBytes = maxBytes;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.storeDir = Paths.get(storeDir);
+    }
+
+    /**
+     * Content-addressed key of a QR text
+     */
+    public static String keyOf(String qrText) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(qrText.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available.", e);
+        }
+    }
+
+    /**
+     * PNG bytes of the user's pass QR code, rendered only on a cache miss
+     */
+    public byte[] getPng(Long userId, String qrText) throws WriterException, IOException {
+        return getOrRender(userId, qrText).png;
+    }
+
+    /**
+     * Pre-rendered PNG for a key in the on-disk store, or null if there is none
+     */
+    public Path getStoredPng(String key) {
+        Path file = storeDir.resolve(key + ".png");
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * Render a QR text into the on-disk store. Returns false if it was already stored.
+     * The file is written under a temporary name and moved into place, so readers
+     * never see a partial image.
+     */
+    public boolean store(String qrText) throws WriterException, IOException {
+        Path file = storeDir.resolve(keyOf(qrText) + ".png");
+        if (Files.isRegularFile(file)) {
+            return false;
+        }
+        Files.createDirectories(storeDir);
+        Path temp = Files.createTempFile(storeDir, "qr-", ".tmp");
+        try {
+            Files.write(temp, render(qrText));
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    /**
+     * Delete stored images last written before the given instant (superseded tokens).
+     * Returns the number of files deleted.
+     */
+    public int pruneStore(Instant before) throws IOException {
+        if (!Files.isDirectory(storeDir)) {
+            return 0;
+        }
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(storeDir, "*.png")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(before) && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Drop the cached QR image of a user's pass
+     */
+    public void invalidate(Long userId) {
+        synchronized (entries) {
+            String key = keyByUser.get(userId);
+            if (key != null) {
+                remove(key);
+            }
+        }
+    }
+
+    private Entry getOrRender(Long userId, String qrText) throws WriterException, IOException {
+        String key = keyOf(qrText);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && Instant.now().isBefore(entry.expiresAt)) {
+                return entry;
+            }
+        }
+
+        // Render outside the lock; two concurrent misses for the same text just render twice
+        Entry rendered = new Entry(key, userId, render(qrText), Instant.now().plus(ttl));
+        synchronized (entries) {
+            String previousKey = keyByUser.get(userId);
+            if (previousKey != null) {
+                remove(previousKey);
+            }
+            remove(key);
+            entries.put(key, rendered);
+            keyByUser.put(userId, key);
+            totalBytes += rendered.size();
+            evict();
+        }
+        return rendered;
+    }
+
+    // Drop expired entries from the LRU end, then the least recently used ones until under the byte cap
+    private void evict() {
+        Instant now = Instant.now();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry eldest = it.next();
+            if (totalBytes <= maxBytes && now.isBefore(eldest.expiresAt)) {
+                break;
+            }
+            totalBytes -= eldest.size();
+            keyByUser.remove(eldest.userId, eldest.key);
+            it.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.size();
+            keyByUser.remove(removed.userId, key);
+        }
+    }
+
+    private static byte[] render(String text) throws WriterException, IOException {
+        QRCodeWriter qrCodeWriter = new QRCodeWriter();
+        BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, QR_SIZE, QR_SIZE);
+
+        BufferedImage bufferedImage = MatrixToImageWriter.toBufferedImage(bitMatrix);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(bufferedImage, "PNG", outputStream);
+
+        return outputStream.toByteArray();
+    }
+}
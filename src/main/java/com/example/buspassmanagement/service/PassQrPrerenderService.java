@@ -0,0 +1,149 @@
+package com.example.buspassmanagement.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.buspassmanagement.model.BusPass;
+import com.example.buspassmanagement.model.JobRun;
+import com.example.buspassmanagement.repository.BusPassRepository;
+import com.example.buspassmanagement.repository.JobRunRepository;
+
+/**
+ * Batch job that renders the QR code of every active bus pass into the on-disk store
+ * ahead of time, so a term-start rush of /pass views serves files instead of rendering
+ * on request threads.
+ *
+ * Tokens are issued per day, so the job renders today's images and prunes the files
+ * of earlier days. It runs when an admin triggers it, and optionally on a cron
+ * (pass.qr-store.prerender-cron, disabled by default).
+ */
+@Service
+public class PassQrPrerenderService {
+
+    public static final String JOB_NAME = "pass-qr-prerender";
+
+    @Autowired
+    private BusPassRepository busPassRepository;
+
+    @Autowired
+    private PassTokenService passTokenService;
+
+    @Autowired
+    private PassQrCodeService passQrCodeService;
+
+    @Autowired
+    private JobRunRepository jobRunRepository;
+
+    @Scheduled(cron = "${pass.qr-store.prerender-cron:-}")
+    public void scheduledPrerender() {
+        prerenderActivePasses();
+    }
+
+    /**
+     * Render the QR codes of all active passes on a worker pool sized to the cores.
+     * Records the run and returns the summary.
+     */
+    public PrerenderResult prerenderActivePasses() {
+        long started = System.nanoTime();
+        JobRun run = new JobRun();
+        run.setJobName(JOB_NAME);
+        run.setStartedAt(LocalDateTime.now());
+
+        List<BusPassRepository.PassValidity> passes = busPassRepository.findRoutesByStatusValidOn(
+            BusPass.PassStatus.ACTIVE, LocalDate.now());
+        Map<String, Integer> routeIds = passTokenService.routeIds();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger rendered = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        int workers = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            // Workers pull passes off a shared cursor, so a slow render does not hold up a whole slice
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < passes.size(); i = next.getAndIncrement()) {
+                        BusPassRepository.PassValidity pass = passes.get(i);
+                        try {
+                            String token = passTokenService.issue(pass.getId(),
+                                routeIds.getOrDefault(pass.getSelectedRoute(), 0), pass.getVersion(), true,
+                                pass.getValidUntil());
+                            if (passQrCodeService.store(token)) {
+                                rendered.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                            System.err.println("ERROR pre-rendering QR code for pass " + pass.getId() + ": " + e.getMessage());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            int pruned = passQrCodeService.pruneStore(
+                LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant());
+
+            PrerenderResult result = new PrerenderResult(passes.size(), rendered.get(), failed.get(), pruned,
+                (System.nanoTime() - started) / 1_000_000);
+            run.setRowsAffected(result.rendered);
+            System.out.println("QR pre-render: " + result.passes + " active passes, " + result.rendered
+                + " rendered, " + result.failed + " failed, " + pruned + " stale files pruned in "
+                + result.elapsedMillis + " ms (" + result.getPassesPerSecond() + " passes/s, "
+                + workers + " workers).");
+            return result;
+
+        } catch (Exception e) {
+            String message = String.valueOf(e.getMessage());
+            run.setErrorMessage(message.length() > 500 ? message.substring(0, 500) : message);
+            System.err.println("ERROR during QR pre-render: " + e.getMessage());
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("QR pre-render failed: " + e.getMessage(),
+                e instanceof ExecutionException ? e.getCause() : e);
+        } finally {
+            pool.shutdownNow();
+            run.setFinishedAt(LocalDateTime.now());
+            jobRunRepository.save(run);
+        }
+    }
+
+    /**
+     * Summary of a pre-render run
+     */
+    public static class PrerenderResult {
+        public final int passes;
+        public final int rendered;
+        public final int failed;
+        public final int pruned;
+        public final long elapsedMillis;
+
+        PrerenderResult(int passes, int rendered, int failed, int pruned, long elapsedMillis) {
+            this.passes = passes;
+            this.rendered = rendered;
+            this.failed = failed;
+            this.pruned = pruned;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getPassesPerSecond() {
+            return passes * 1000L / Math.max(elapsedMillis, 1);
+        }
+    }
+}
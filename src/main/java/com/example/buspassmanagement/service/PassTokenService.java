@@ -0,0 +1,260 @@
+package com.example.buspassmanagement.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.buspassmanagement.model.BusPass;
+import com.example.buspassmanagement.model.RouteInstallment;
+import com.example.buspassmanagement.repository.BusPassRepository;
+import com.example.buspassmanagement.repository.RouteInstallmentRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Issues and verifies the signed tokens encoded in bus pass QR codes.
+ *
+ * A token is 38 bytes, Base64url encoded (51 characters):
+ * format (1) | pass id (8) | route id (4) | valid until, epoch day (4) | pass version (4) | status (1)
+ * followed by the first 16 bytes of an HMAC-SHA256 over those fields.
+ *
+ * Verification needs no database access: the signature proves the fields, and passes
+ * that were deactivated or moved to another route are revoked through an in-memory
+ * map of pass id to the lowest pass version still accepted. Tokens are issued for the
+ * current day, so the same pass state always yields the same token (and QR image), and
+ * never outlive the pass's own validity window. Route IDs are looked up in an in-memory
+ * map, reloaded whenever routes are saved or deleted, so issuing a token needs no query.
+ * The signing secret comes from the environment (PASS_TOKEN_SECRET); startup fails
+ * without one.
+ */
+@Service
+public class PassTokenService {
+
+    private static final byte FORMAT = 1;
+    private static final int PAYLOAD_LENGTH = 1 + 8 + 4 + 4 + 4 + 1;
+    private static final int MAC_LENGTH = 16;
+    private static final int TOKEN_LENGTH = PAYLOAD_LENGTH + MAC_LENGTH;
+    private static final int TOKEN_CHARS = (TOKEN_LENGTH * 4 + 2) / 3;
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    public enum Outcome { VALID, MALFORMED, BAD_SIGNATURE, EXPIRED, REVOKED, INACTIVE }
+
+    @Autowired
+    private BusPassRepository busPassRepository;
+
+    @Autowired
+    private RouteInstallmentRepository routeInstallmentRepository;
+
+    private final SecretKeySpec key;
+    private final int validityDays;
+
+    // Mac instances are not thread-safe and costly to look up, so each thread keeps one
+    private final ThreadLocal<Mac> macs;
+
+    // Pass id -> lowest pass version whose tokens are still accepted
+    private final Map<Long, Integer> revokedBelow = new ConcurrentHashMap<>();
+
+    // Route name -> route ID carried in tokens
+    private volatile Map<String, Integer> routeIds = Map.of();
+
+    public PassTokenService(@Value("${pass.token.secret}") String secret,
+                            @Value("${pass.token.validity-days:1}") int validityDays) {
+        if (secret == null || secret.length() < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("pass.token.secret (PASS_TOKEN_SECRET) must be set to at least "
+                + MIN_SECRET_LENGTH + " characters.");
+        }
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.validityDays = validityDays;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 not available.", e);
+            }
+        });
+    }
+
+    /**
+     * Load the route IDs, and rebuild the revocations, which do not survive a restart, for
+     * inactive and expired passes: their tokens from before the deactivation must keep
+     * failing. Route changes of active passes are not recoverable this way; those tokens
+     * carry the old route id and expire within the validity window.
+     */
+    @PostConstruct
+    void load() {
+        refreshRouteIds();
+        for (BusPassRepository.PassVersion pass : busPassRepository.findVersionsByStatusIn(
+                List.of(BusPass.PassStatus.INACTIVE, BusPass.PassStatus.EXPIRED))) {
+            revokedBelow.put(pass.getId(), (int) pass.getVersion());
+        }
+        System.out.println("Loaded " + revokedBelow.size() + " pass token revocations.");
+    }
+
+    /**
+     * Token for the current state of a pass, valid through today plus the validity window
+     */
+    public String issue(BusPass busPass) {
+        int routeId = busPass.getSelectedRoute() != null ? routeIds.getOrDefault(busPass.getSelectedRoute(), 0) : 0;
+        return issue(busPass.getId(), routeId, busPass.getVersion(), busPass.isActive(), busPass.getValidUntil());
+    }
+
+    /**
+     * Token for a pass given its fields, for batch issuing without loading entities.
+     * The token is valid through today plus the validity window, but no later than
+     * passValidUntil when the pass has one.
+     */
+    public String issue(long passId, int routeId, long version, boolean active, LocalDate passValidUntil) {
+        LocalDate tokenValidUntil = LocalDate.now().plusDays(validityDays);
+        if (passValidUntil != null && passValidUntil.isBefore(tokenValidUntil)) {
+            tokenValidUntil = passValidUntil;
+        }
+        int validUntil = (int) tokenValidUntil.toEpochDay();
+
+        byte[] token = new byte[TOKEN_LENGTH];
+        ByteBuffer.wrap(token)
+            .put(FORMAT)
+            .putLong(passId)
+            .putInt(routeId)
+            .putInt(validUntil)
+            .putInt((int) version)
+            .put((byte) (active ? 1 : 0));
+
+        Mac mac = macs.get();
+        mac.update(token, 0, PAYLOAD_LENGTH);
+        System.arraycopy(mac.doFinal(), 0, token, PAYLOAD_LENGTH, MAC_LENGTH);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    /**
+     * Route ID carried in tokens, by route name
+     */
+    public Map<String, Integer> routeIds() {
+        return routeIds;
+    }
+
+    /**
+     * Reload the route IDs; called once route changes have committed
+     */
+    public void refreshRouteIds() {
+        Map<String, Integer> ids = new HashMap<>();
+        for (RouteInstallment route : routeInstallmentRepository.findAll()) {
+            ids.put(route.getRouteName(), route.getId().intValue());
+        }
+        routeIds = Map.copyOf(ids);
+    }
+
+    /**
+     * Verify a scanned token: signature, expiry, revocation and pass status
+     */
+    public Verification verify(String token) {
+        if (token == null || token.length() != TOKEN_CHARS) {
+            return Verification.rejected(Outcome.MALFORMED);
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            return Verification.rejected(Outcome.MALFORMED);
+        }
+        if (bytes.length != TOKEN_LENGTH || bytes[0] != FORMAT) {
+            return Verification.rejected(Outcome.MALFORMED);
+        }
+
+        Mac mac = macs.get();
+        mac.update(bytes, 0, PAYLOAD_LENGTH);
+        byte[] expected = mac.doFinal();
+        int diff = 0;
+        for (int i = 0; i < MAC_LENGTH; i++) {
+            diff |= expected[i] ^ bytes[PAYLOAD_LENGTH + i];
+        }
+        if (diff != 0) {
+            return Verification.rejected(Outcome.BAD_SIGNATURE);
+        }
+
+        ByteBuffer payload = ByteBuffer.wrap(bytes, 1, PAYLOAD_LENGTH - 1);
+        long passId = payload.getLong();
+        int routeId = payload.getInt();
+        int validUntil = payload.getInt();
+        int version = payload.getInt();
+        boolean active = payload.get() == 1;
+
+        Outcome outcome;
+        if (validUntil < LocalDate.now().toEpochDay()) {
+            outcome = Outcome.EXPIRED;
+        } else if (version < revokedBelow.getOrDefault(passId, Integer.MIN_VALUE)) {
+            outcome = Outcome.REVOKED;
+        } else if (!active) {
+            outcome = Outcome.INACTIVE;
+        } else {
+            outcome = Outcome.VALID;
+        }
+        return new Verification(outcome, passId, routeId, LocalDate.ofEpochDay(validUntil));
+    }
+
+    /**
+     * Reject the pass's tokens up to its current version once the surrounding
+     * transaction commits; the change being made bumps the version past them
+     */
+    public void revoke(BusPass busPass) {
+        revoke(busPass.getId(), busPass.getVersion());
+    }
+
+    /**
+     * Same as revoke(BusPass), for a pass given its ID and current version
+     */
+    public void revoke(long passId, long version) {
+        int acceptedFrom = (int) version + 1;
+        Runnable apply = () -> revokedBelow.merge(passId, acceptedFrom, Math::max);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    /**
+     * Result of verifying a token
+     */
+    public static class Verification {
+        public final Outcome outcome;
+        public final boolean valid;
+        public final Long passId;
+        public final Integer routeId;
+        public final LocalDate validUntil;
+
+        Verification(Outcome outcome, Long passId, Integer routeId, LocalDate validUntil) {
+            this.outcome = outcome;
+            this.valid = outcome == Outcome.VALID;
+            this.passId = passId;
+            this.routeId = routeId;
+            this.validUntil = validUntil;
+        }
+
+        static Verification rejected(Outcome outcome) {
+            return new Verification(outcome, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.buspassmanagement.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.buspassmanagement.model.BusPass;
+import com.example.buspassmanagement.model.JobRun;
+import com.example.buspassmanagement.model.RouteInstallment;
+import com.example.buspassmanagement.repository.BusPassRepository;
+import com.example.buspassmanagement.repository.JobRunRepository;
+import com.example.buspassmanagement.repository.RouteInstallmentRepository;
+
+/**
+ * Validity windows of bus passes: how long an activation lasts, the nightly sweep that
+ * expires passes past their window, and bulk renewal for the next term.
+ *
+ * A pass activated for a route is valid until the configured term end date
+ * (pass.validity.term-end) or, when that is not set, the route's final installment
+ * deadline. The sweep and the renewal work in chunks: each chunk locks its rows with
+ * SELECT ... FOR UPDATE, changes them with one UPDATE and commits, then the active-pass
+ * index and the token revocations are updated for exactly the rows that changed, and
+ * the changes are appended to the validator sync feed.
+ */
+@Service
+public class PassValidityService {
+
+    public static final String EXPIRY_JOB_NAME = "pass-expiry-sweep";
+    public static final String RENEWAL_JOB_NAME = "pass-renewal";
+
+    private static final int CHUNK_SIZE = 1000;
+
+    @Autowired
+    private BusPassRepository busPassRepository;
+
+    @Autowired
+    private RouteInstallmentRepository routeInstallmentRepository;
+
+    @Autowired
+    private ActivePassIndex activePassIndex;
+
+    @Autowired
+    private PassTokenService passTokenService;
+
+    @Autowired
+    private PassChangeFeedService passChangeFeedService;
+
+    @Autowired
+    private JobRunRepository jobRunRepository;
+
+    private final TransactionTemplate transactionTemplate;
+    private final LocalDate termEnd;
+
+    public PassValidityService(PlatformTransactionManager transactionManager,
+                               @Value("${pass.validity.term-end:}") String termEnd) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.termEnd = termEnd.isBlank() ? null : LocalDate.parse(termEnd);
+    }
+
+    /**
+     * Last day of validity for a pass activated today on the given route, or null if
+     * neither a term end nor the route's deadlines are known. A window that has already
+     * ended (payment after the final deadline) still covers today.
+     */
+    public LocalDate validUntilFor(String routeName) {
+        LocalDate validUntil = termEnd;
+        if (validUntil == null && routeName != null) {
+            validUntil = routeInstallmentRepository.findByRouteName(routeName)
+                .map(RouteInstallment::getInstallment3Deadline)
+                .orElse(null);
+        }
+        LocalDate today = LocalDate.now();
+        return validUntil != null && validUntil.isBefore(today) ? today : validUntil;
+    }
+
+    /**
+     * Runs daily shortly after midnight (configurable via pass.expiry-sweep.cron)
+     */
+    @Scheduled(cron = "${pass.expiry-sweep.cron:0 20 0 * * *}")
+    public void scheduledSweep() {
+        expirePasses(LocalDate.now());
+    }
+
+    /**
+     * Expire every active pass whose validity ended before the given day.
+     * Records the run and returns the number of passes expired.
+     */
+    public long expirePasses(LocalDate today) {
+        JobRun run = new JobRun();
+        run.setJobName(EXPIRY_JOB_NAME);
+        run.setStartedAt(LocalDateTime.now());
+
+        long total = 0;
+        try {
+            int updated;
+            do {
+                updated = transactionTemplate.execute(status -> {
+                    List<BusPassRepository.PassRoute> chunk = busPassRepository.lockExpiredChunk(today, CHUNK_SIZE);
+                    if (chunk.isEmpty()) {
+                        return 0;
+                    }
+                    List<Long> ids = ids(chunk);
+                    busPassRepository.updateStatus(ids, BusPass.PassStatus.EXPIRED);
+                    passChangeFeedService.recordAll(ids);
+                    for (BusPassRepository.PassRoute pass : chunk) {
+                        passTokenService.revoke(pass.getId(), pass.getVersion());
+                        activePassIndex.passDeactivated(pass.getId(), pass.getSelectedRoute());
+                    }
+                    return chunk.size();
+                });
+                total += updated;
+            } while (updated == CHUNK_SIZE);
+        } catch (Exception e) {
+            String message = String.valueOf(e.getMessage());
+            run.setErrorMessage(message.length() > 500 ? message.substring(0, 500) : message);
+            System.err.println("ERROR during pass expiry sweep: " + e.getMessage());
+        }
+
+        run.setRowsAffected(total);
+        run.setFinishedAt(LocalDateTime.now());
+        jobRunRepository.save(run);
+
+        System.out.println("Pass expiry sweep: " + total + " passes expired.");
+        return total;
+    }
+
+    /**
+     * Renew every expired, fully paid pass (optionally only on one route) for the
+     * next term, valid from today until the given day. Records the run and returns
+     * the number of passes renewed.
+     */
+    public long renewExpiredPasses(String routeName, LocalDate validUntil) {
+        JobRun run = new JobRun();
+        run.setJobName(RENEWAL_JOB_NAME);
+        run.setStartedAt(LocalDateTime.now());
+
+        long total = 0;
+        try {
+            LocalDate today = LocalDate.now();
+            int updated;
+            do {
+                updated = transactionTemplate.execute(status -> {
+                    List<BusPassRepository.PassRoute> chunk = busPassRepository.lockRenewableChunk(routeName, CHUNK_SIZE);
+                    if (chunk.isEmpty()) {
+                        return 0;
+                    }
+                    List<Long> ids = ids(chunk);
+                    busPassRepository.updateStatusAndValidity(ids, BusPass.PassStatus.ACTIVE, today, validUntil);
+                    passChangeFeedService.recordAll(ids);
+                    for (BusPassRepository.PassRoute pass : chunk) {
+                        activePassIndex.passActivated(pass.getId(), pass.getSelectedRoute());
+                    }
+                    return chunk.size();
+                });
+                total += updated;
+            } while (updated == CHUNK_SIZE);
+        } catch (Exception e) {
+            String message = String.valueOf(e.getMessage());
+            run.setErrorMessage(message.length() > 500 ? message.substring(0, 500) : message);
+            System.err.println("ERROR during pass renewal: " + e.getMessage());
+            throw e;
+        } finally {
+            run.setRowsAffected(total);
+            run.setFinishedAt(LocalDateTime.now());
+            jobRunRepository.save(run);
+        }
+
+        System.out.println("Pass renewal: " + total + " passes renewed until " + validUntil + ".");
+        return total;
+    }
+
+    private static List<Long> ids(List<BusPassRepository.PassRoute> passes) {
+        List<Long> ids = new ArrayList<>(passes.size());
+        for (BusPassRepository.PassRoute pass : passes) {
+            ids.add(pass.getId());
+        }
+        return ids;
+    }
+}
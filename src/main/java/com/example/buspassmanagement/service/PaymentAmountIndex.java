@@ -0,0 +1,115 @@
+package com.example.buspassmanagement.service;
+
+import java.io.IOException;
+
+/**
+ * Open-addressing hash map from payment id to amount (in paise), with a hit counter per entry.
+ *
+ * Keys and values live in parallel primitive arrays, so a ledger of a million payments
+ * costs about 17 MB instead of the boxed Long/Long entries a HashMap would allocate.
+ * Payment ids start at 1, so 0 marks an empty slot.
+ */
+class PaymentAmountIndex {
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private long[] keys;
+    private long[] amounts;
+    private byte[] hits;
+    private int size;
+
+    PaymentAmountIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Add a ledger entry; a repeated id keeps the first amount. Only called before any hit().
+     */
+    void put(long paymentId, long amount) {
+        if (size * 2 >= keys.length) {
+            grow();
+        }
+        int slot = slotOf(paymentId);
+        if (keys[slot] == 0) {
+            keys[slot] = paymentId;
+            amounts[slot] = amount;
+            size++;
+        }
+    }
+
+    /**
+     * Slot holding the id, or -1 if it is not in the ledger
+     */
+    int find(long paymentId) {
+        int slot = slotOf(paymentId);
+        return keys[slot] == 0 ? -1 : slot;
+    }
+
+    long amountAt(int slot) {
+        return amounts[slot];
+    }
+
+    /**
+     * Count a settlement line against the entry and return how often it was seen before
+     */
+    int hit(int slot) {
+        int previous = hits[slot];
+        if (previous < Byte.MAX_VALUE) {
+            hits[slot]++;
+        }
+        return previous;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Visit every entry no settlement line matched
+     */
+    void forEachUnmatched(UnmatchedConsumer consumer) throws IOException {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0 && hits[slot] == 0) {
+                consumer.accept(keys[slot], amounts[slot]);
+            }
+        }
+    }
+
+    interface UnmatchedConsumer {
+        void accept(long paymentId, long amount) throws IOException;
+    }
+
+    // Linear probing from a mixed hash, so sequential ids spread over the table
+    private int slotOf(long paymentId) {
+        int mask = keys.length - 1;
+        int slot = (int) (mix(paymentId) & mask);
+        while (keys[slot] != 0 && keys[slot] != paymentId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldAmounts = amounts;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                amounts[slot] = oldAmounts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        amounts = new long[capacity];
+        hits = new byte[capacity];
+    }
+}
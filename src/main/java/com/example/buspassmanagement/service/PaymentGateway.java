@@ -0,0 +1,36 @@
+package com.example.buspassmanagement.service;
+
+import com.example.buspassmanagement.model.Payment;
+
+/**
+ * Payment provider used to charge a student's PENDING payment.
+ *
+ * An implementation either settles the charge synchronously (ChargeResult.settled)
+ * or settles it later by calling back PaymentWebhookController, which moves the
+ * payment from PENDING to PAID. Selected with the payments.gateway.provider property.
+ */
+public interface PaymentGateway {
+
+    /**
+     * Submit a charge for the payment's amount. Called inside the payment's transaction,
+     * which is re-run if it loses an optimistic locking race. Every attempt passes the
+     * same idempotency key, and a repeated key must return the charge already made for
+     * it rather than charge the student again.
+     */
+    ChargeResult charge(Payment payment, String idempotencyKey);
+
+    /**
+     * Outcome of submitting a charge
+     */
+    class ChargeResult {
+        // Gateway reference identifying the charge in callbacks
+        public final String reference;
+        // True if the charge already succeeded and no callback will follow
+        public final boolean settled;
+
+        public ChargeResult(String reference, boolean settled) {
+            this.reference = reference;
+            this.settled = settled;
+        }
+    }
+}
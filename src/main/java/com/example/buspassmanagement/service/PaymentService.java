@@ -1,15 +1,22 @@
 package com.example.buspassmanagement.service;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.buspassmanagement.model.BusPass;
+import com.example.buspassmanagement.model.Money;
 import com.example.buspassmanagement.model.Payment;
 import com.example.buspassmanagement.model.Payment.PaymentStatus;
 import com.example.buspassmanagement.model.User;
@@ -18,6 +25,13 @@ import com.example.buspassmanagement.repository.PaymentRepository;
 @Service
 public class PaymentService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    // Statuses that still count towards a student's outstanding balance
+    static final List<PaymentStatus> OUTSTANDING_STATUSES =
+        List.of(PaymentStatus.PENDING, PaymentStatus.OVERDUE);
+
     @Autowired
     private PaymentRepository paymentRepository;
 
@@ -30,47 +44,137 @@ public class PaymentService {
     @Autowired
     private BusPassService busPassService;
 
+    @Autowired
+    private OptimisticRetryExecutor retryExecutor;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Autowired
+    private RevenueRollupService revenueRollupService;
+
     public Payment addPayment(Payment payment) {
         return paymentRepository.save(payment);
     }
 
+    /**
+     * Get one page of payments for the admin listing using keyset pagination on id.
+     * Users are fetched in the same query and orphaned payments are filtered in SQL,
+     * so the cost of a page does not depend on the size of the payments table.
+     */
     @Transactional(readOnly = true)
-    public List<Payment> getAllPayments() {
-        List<Payment> allPayments = paymentRepository.findAll();
-        
-        // Filter out payments with missing/deleted users and initialize user data
-        return allPayments.stream()
-            .filter(payment -> {
-                try {
-                    // Try to access the user - this will trigger lazy loading
-                    // Also access the name to fully initialize the user object
-                    payment.getUser().getId();
-                    payment.getUser().getName(); // Initialize the user proxy
-                    return true;
-                } catch (Exception e) {
-                    // User doesn't exist - log and filter out this payment
-                    System.err.println("Warning: Payment ID " + payment.getId() + 
-                        " references a non-existent user. Skipping from results.");
-                    return false;
-                }
-            })
-            .collect(Collectors.toList());
+    public PaymentPage getPaymentsPage(Long afterId, int pageSize) {
+        int size = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        long cursor = (afterId != null ? afterId : 0L);
+
+        // Fetch one extra row to find out whether another page exists
+        List<Payment> rows = paymentRepository.findPageAfter(cursor, Pageable.ofSize(size + 1));
+        boolean hasNext = rows.size() > size;
+        List<Payment> payments = hasNext ? rows.subList(0, size) : rows;
+        Long nextCursor = hasNext ? payments.get(payments.size() - 1).getId() : null;
+
+        return new PaymentPage(payments, nextCursor);
     }
 
     public List<Payment> getPaymentsByUserId(Long userId) {
         return paymentRepository.findByUser_Id(userId);
     }
 
+    /**
+     * Get paid/pending sums and counts for a user, aggregated by the database
+     */
+    @Transactional(readOnly = true)
+    public PaymentTotals getPaymentTotals(Long userId) {
+        PaymentTotals totals = new PaymentTotals();
+        for (PaymentRepository.StatusTotal row : paymentRepository.sumByStatusForUser(userId)) {
+            totals.add(row.getStatus(), row.getTotal(), row.getCount());
+        }
+        return totals;
+    }
+
+    /**
+     * Writes the payments ledger as CSV, streaming rows from the database so memory use
+     * stays constant regardless of how many rows match. Null filters are ignored;
+     * the date range applies to the due date. Returns the number of rows written.
+     */
+    @Transactional(readOnly = true)
+    public long exportPaymentsCsv(String routeName, PaymentStatus status, LocalDate fromDate, LocalDate toDate,
+                                  Writer writer) throws IOException {
+        writer.write("id,student_name,student_email,route,installment,full_payment,amount,due_date,payment_date,status\n");
+        long count = 0;
+        try (Stream<PaymentRepository.ExportRow> rows =
+                 paymentRepository.streamForExport(routeName, status, fromDate, toDate)) {
+            Iterator<PaymentRepository.ExportRow> it = rows.iterator();
+            while (it.hasNext()) {
+                PaymentRepository.ExportRow row = it.next();
+                writer.write(String.valueOf(row.getId()));
+                writer.write(',');
+                writer.write(csv(row.getStudentName()));
+                writer.write(',');
+                writer.write(csv(row.getStudentEmail()));
+                writer.write(',');
+                writer.write(csv(row.getRouteName()));
+                writer.write(',');
+                writer.write(row.getInstallmentNumber() != null ? row.getInstallmentNumber().toString() : "");
+                writer.write(',');
+                writer.write(String.valueOf(Boolean.TRUE.equals(row.getIsFullPayment())));
+                writer.write(',');
+                writer.write(Money.format(row.getAmountPaise()));
+                writer.write(',');
+                writer.write(row.getDueDate() != null ? row.getDueDate().toString() : "");
+                writer.write(',');
+                writer.write(row.getPaymentDate() != null ? row.getPaymentDate().toString() : "");
+                writer.write(',');
+                writer.write(row.getStatus() != null ? row.getStatus().name() : "");
+                writer.write('\n');
+                count++;
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    // Quote a CSV field when it contains a separator, quote or line break
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
     public Optional<Payment> getPaymentById(Long id) {
         return paymentRepository.findById(id);
     }
 
-    @Transactional
-    public Payment markAsPaid(Long id) {
-        return paymentRepository.findById(id).map(payment -> {
-            payment.setStatus(PaymentStatus.PAID);
-            return paymentRepository.save(payment);
-        }).orElse(null);
+    /**
+     * Pay an outstanding payment record through the payment gateway (retried on concurrent update).
+     * Returns true if the gateway settled it immediately, false if settlement will arrive by webhook.
+     */
+    public boolean markAsPaid(Long id) {
+        String chargeKey = newChargeKey();
+        return retryExecutor.execute(() -> doMarkAsPaid(id, chargeKey));
+    }
+
+    private boolean doMarkAsPaid(Long id, String chargeKey) {
+        Payment payment = paymentRepository.findById(id)
+            .orElseThrow(() -> new IllegalArgumentException("Payment not found."));
+        if (payment.getStatus() == PaymentStatus.PAID) {
+            throw new IllegalStateException("This payment has already been paid.");
+        }
+        if (!OUTSTANDING_STATUSES.contains(payment.getStatus())) {
+            throw new IllegalStateException("This payment is no longer due.");
+        }
+        if (isAwaitingSettlement(payment) || (payment.getRouteName() != null
+                && paymentRepository.existsAwaitingSettlement(payment.getUser(), payment.getRouteName(), PaymentStatus.PAID))) {
+            throw new IllegalStateException("A payment for this route is already being processed.");
+        }
+        return charge(payment, chargeKey);
     }
     
     public void deletePayment(Long id) {
@@ -78,38 +182,58 @@ public class PaymentService {
     }
 
     /**
-     * Handles the logic for a user paying their full outstanding balance.
-     * This method is transactional, ensuring all operations succeed or none do.
+     * Handles the logic for a user paying the full outstanding balance of their route
+     * through the payment gateway (retried on concurrent update).
+     * Returns true if the gateway settled it immediately, false if settlement will arrive by webhook.
      */
-    @Transactional
-    public void payFullAmountForUser(User user) {
-        List<Payment> pendingPayments = getPaymentsByUserId(user.getId()).stream()
-                .filter(p -> p.getStatus() == PaymentStatus.PENDING)
-                .collect(Collectors.toList());
+    public boolean payFullAmountForUser(User user) {
+        String chargeKey = newChargeKey();
+        return retryExecutor.execute(() -> doPayFullAmountForUser(user, chargeKey));
+    }
 
-        if (pendingPayments.isEmpty()) {
+    private boolean doPayFullAmountForUser(User user, String chargeKey) {
+        String routeName = busPassService.findByUser(user).map(BusPass::getSelectedRoute).orElse(null);
+        if (routeName == null) {
             throw new IllegalStateException("You have no outstanding fees to pay.");
         }
 
-        double totalAmount = pendingPayments.stream()
-                .mapToDouble(Payment::getAmount)
-                .sum();
-        
-        pendingPayments.forEach(p -> deletePayment(p.getId()));
+        // Rows already handed to the gateway settle through their own callback
+        if (paymentRepository.existsAwaitingSettlement(user, routeName, PaymentStatus.PAID)) {
+            throw new IllegalStateException("A payment for this route is already being processed.");
+        }
 
+        // Outstanding balance computed by the database
+        PaymentRepository.AmountTotal outstanding =
+            paymentRepository.sumUnsubmittedForRoute(user, routeName, OUTSTANDING_STATUSES);
+        if (outstanding.getCount() == 0) {
+            throw new IllegalStateException("You have no outstanding fees to pay.");
+        }
+
+        // The lump sum settles the rest of the route, so it is recorded as the route's full
+        // payment: the pass mask, activation, renewal and schedule generation all see the
+        // route as paid. The outstanding rows are replaced only once the charge succeeds
+        // (see settle); a failed charge leaves them as they were.
         Payment lumpSumPayment = new Payment();
-        lumpSumPayment.setAmount(totalAmount);
-        lumpSumPayment.setDueDate(LocalDate.now());
-        lumpSumPayment.setStatus(PaymentStatus.PAID);
         lumpSumPayment.setUser(user);
-        addPayment(lumpSumPayment);
+        lumpSumPayment.setRouteName(routeName);
+        lumpSumPayment.setInstallmentNumber(null);
+        lumpSumPayment.setIsFullPayment(true);
+        lumpSumPayment.setAmountPaise(outstanding.getTotal());
+        lumpSumPayment.setDueDate(LocalDate.now());
+        lumpSumPayment.setStatus(PaymentStatus.PENDING);
+        return charge(lumpSumPayment, chargeKey);
     }
 
     /**
-     * Pay a specific installment for a route
+     * Pay a specific installment for a route (retried on concurrent update).
+     * Returns true if the gateway settled it immediately, false if settlement will arrive by webhook.
      */
-    @Transactional
-    public void payInstallment(User user, String routeName, Integer installmentNumber) {
+    public boolean payInstallment(User user, String routeName, Integer installmentNumber) {
+        String chargeKey = newChargeKey();
+        return retryExecutor.execute(() -> doPayInstallment(user, routeName, installmentNumber, chargeKey));
+    }
+
+    private boolean doPayInstallment(User user, String routeName, Integer installmentNumber, String chargeKey) {
         // Check if already paid
         List<Payment> existingPayments = paymentRepository.findByUserAndRouteNameAndInstallmentNumber(
             user, routeName, installmentNumber);
@@ -121,53 +245,62 @@ public class PaymentService {
             throw new IllegalStateException("This installment has already been paid.");
         }
 
+        // Includes a full payment or lump sum for the route that is still waiting for the gateway
+        if (paymentRepository.existsAwaitingSettlement(user, routeName, PaymentStatus.PAID)) {
+            throw new IllegalStateException("A payment for this route is already being processed.");
+        }
+
         // Get route installment configuration
         var routeInstallment = routeInstallmentService.findByRouteName(routeName)
             .orElseThrow(() -> new IllegalStateException("Route installment configuration not found."));
 
         // Determine amount and deadline based on installment number
-        Double amount;
+        long amount;
         LocalDate deadline;
         switch (installmentNumber) {
             case 1:
-                amount = routeInstallment.getInstallment1Amount();
+                amount = routeInstallment.getInstallment1AmountPaise();
                 deadline = routeInstallment.getInstallment1Deadline();
                 break;
             case 2:
-                amount = routeInstallment.getInstallment2Amount();
+                amount = routeInstallment.getInstallment2AmountPaise();
                 deadline = routeInstallment.getInstallment2Deadline();
                 break;
             case 3:
-                amount = routeInstallment.getInstallment3Amount();
+                amount = routeInstallment.getInstallment3AmountPaise();
                 deadline = routeInstallment.getInstallment3Deadline();
                 break;
             default:
                 throw new IllegalArgumentException("Invalid installment number. Must be 1, 2, or 3.");
         }
 
-        // Create payment record
-        Payment payment = new Payment();
+        // Charge the generated PENDING/OVERDUE row if there is one, otherwise create the record
+        Payment payment = existingPayments.stream()
+            .filter(p -> p.getStatus() == PaymentStatus.PENDING || p.getStatus() == PaymentStatus.OVERDUE)
+            .findFirst()
+            .orElseGet(Payment::new);
         payment.setUser(user);
         payment.setRouteName(routeName);
         payment.setInstallmentNumber(installmentNumber);
-        payment.setAmount(amount);
+        payment.setAmountPaise(amount);
         payment.setDueDate(deadline);
-        payment.setPaymentDate(LocalDate.now());
-        payment.setStatus(PaymentStatus.PAID);
         payment.setIsFullPayment(false);
-        
-        paymentRepository.save(payment);
 
-        // Update user's selected route and check if all installments paid
+        // Remember the user's route, then hand the charge to the gateway
         busPassService.setSelectedRoute(user, routeName);
-        checkAndActivateBusPass(user, routeName);
+        return charge(payment, chargeKey);
     }
 
     /**
-     * Pay all 3 installments together
+     * Pay all 3 installments together (retried on concurrent update).
+     * Returns true if the gateway settled it immediately, false if settlement will arrive by webhook.
      */
-    @Transactional
-    public void payAllInstallments(User user, String routeName) {
+    public boolean payAllInstallments(User user, String routeName) {
+        String chargeKey = newChargeKey();
+        return retryExecutor.execute(() -> doPayAllInstallments(user, routeName, chargeKey));
+    }
+
+    private boolean doPayAllInstallments(User user, String routeName, String chargeKey) {
         // Check if any installments already paid
         List<Payment> existingPayments = paymentRepository.findByUserAndRouteName(user, routeName);
         boolean anyPaid = existingPayments.stream()
@@ -177,6 +310,10 @@ public class PaymentService {
             throw new IllegalStateException("Some installments have already been paid. Cannot pay all together.");
         }
 
+        if (existingPayments.stream().anyMatch(this::isAwaitingSettlement)) {
+            throw new IllegalStateException("A payment for this route is already being processed.");
+        }
+
         // Get route installment configuration
         var routeInstallment = routeInstallmentService.findByRouteName(routeName)
             .orElseThrow(() -> new IllegalStateException("Route installment configuration not found."));
@@ -185,45 +322,105 @@ public class PaymentService {
         Payment payment = new Payment();
         payment.setUser(user);
         payment.setRouteName(routeName);
-        payment.setAmount(routeInstallment.getTotalFee());
+        payment.setAmountPaise(routeInstallment.getTotalFeePaise());
         payment.setDueDate(routeInstallment.getInstallment3Deadline());
-        payment.setPaymentDate(LocalDate.now());
-        payment.setStatus(PaymentStatus.PAID);
+        payment.setStatus(PaymentStatus.PENDING);
         payment.setIsFullPayment(true);
         payment.setInstallmentNumber(null); // null indicates full payment
-        
-        paymentRepository.save(payment);
 
-        // Update user's selected route and activate bus pass
+        // Remember the user's route, then hand the charge to the gateway
         busPassService.setSelectedRoute(user, routeName);
-        busPassService.activatePass(user);
+        return charge(payment, chargeKey);
     }
 
     /**
-     * Check if all installments are paid and activate bus pass if so
+     * Gateway webhook: apply the outcome of an asynchronous charge (retried on concurrent update).
+     * Repeated callbacks for an already settled charge are ignored.
      */
-    private void checkAndActivateBusPass(User user, String routeName) {
-        List<Payment> paidPayments = paymentRepository.findByUserAndRouteNameAndStatus(
-            user, routeName, PaymentStatus.PAID);
-        
-        // Check if full payment exists
-        boolean hasFullPayment = paidPayments.stream()
-            .anyMatch(p -> p.getIsFullPayment() != null && p.getIsFullPayment());
-        
-        if (hasFullPayment) {
-            busPassService.activatePass(user);
-            return;
+    public void handleGatewayCallback(String gatewayReference, boolean succeeded) {
+        retryExecutor.run(() -> {
+            Payment payment = paymentRepository.findByGatewayReference(gatewayReference)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown gateway reference: " + gatewayReference));
+
+            if (payment.getStatus() == PaymentStatus.PAID) {
+                return;
+            }
+
+            if (succeeded) {
+                settle(payment);
+            } else if (Boolean.TRUE.equals(payment.getIsFullPayment())) {
+                // A failed full payment leaves the per-installment rows as they were
+                paymentRepository.delete(payment);
+            } else {
+                // Release the record so the student can try again
+                payment.setGatewayReference(null);
+                paymentRepository.save(payment);
+            }
+        });
+    }
+
+    // One key per payment request, created outside the retry loop so every attempt shares it
+    private static String newChargeKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Submit a PENDING payment to the gateway and settle it right away if the gateway did.
+     * The charge key is the same on every retry of the transaction, so the gateway returns
+     * the charge it already made instead of billing the student twice.
+     */
+    private boolean charge(Payment payment, String chargeKey) {
+        paymentRepository.save(payment);
+        PaymentGateway.ChargeResult result = paymentGateway.charge(payment, chargeKey);
+        payment.setGatewayReference(result.reference);
+        paymentRepository.save(payment);
+
+        if (result.settled) {
+            settle(payment);
         }
+        return result.settled;
+    }
+
+    /**
+     * Mark a payment PAID and apply its effects on the ledger and the bus pass
+     */
+    private void settle(Payment payment) {
+        User user = payment.getUser();
+        String routeName = payment.getRouteName();
+
+        payment.setStatus(PaymentStatus.PAID);
+        payment.setPaymentDate(LocalDate.now());
+        paymentRepository.save(payment);
+
+        if (Boolean.TRUE.equals(payment.getIsFullPayment()) && routeName != null) {
+            // The single full payment replaces any generated per-installment rows
+            // (rows submitted to the gateway on their own are left to their callback)
+            paymentRepository.deleteOutstandingForRouteExcept(user, routeName, OUTSTANDING_STATUSES, payment.getId());
+        }
+
+        revenueRollupService.recordPayment(payment);
+        outboxService.paymentReceived(user, routeName, payment.getInstallmentNumber(), payment.getAmountPaise());
+
+        // Route payments also drive the bus pass status
+        if (routeName != null) {
+            checkAndActivateBusPass(user, routeName);
+        }
+    }
 
-        // Check if all 3 installments are paid
-        boolean hasInstallment1 = paidPayments.stream()
-            .anyMatch(p -> p.getInstallmentNumber() != null && p.getInstallmentNumber() == 1);
-        boolean hasInstallment2 = paidPayments.stream()
-            .anyMatch(p -> p.getInstallmentNumber() != null && p.getInstallmentNumber() == 2);
-        boolean hasInstallment3 = paidPayments.stream()
-            .anyMatch(p -> p.getInstallmentNumber() != null && p.getInstallmentNumber() == 3);
+    // A PENDING row already submitted to the gateway and waiting for its callback
+    private boolean isAwaitingSettlement(Payment payment) {
+        return payment.getStatus() != PaymentStatus.PAID && payment.getGatewayReference() != null;
+    }
+
+    /**
+     * Refresh the pass's paid-installment mask from the ledger and activate
+     * the bus pass if all installments are paid
+     */
+    private void checkAndActivateBusPass(User user, String routeName) {
+        int mask = paymentRepository.findInstallmentMask(user, routeName, PaymentStatus.PAID);
+        BusPass busPass = busPassService.updateInstallmentMask(user, mask);
         
-        if (hasInstallment1 && hasInstallment2 && hasInstallment3) {
+        if (busPass.isFullyPaid()) {
             busPassService.activatePass(user);
         }
     }
@@ -239,24 +436,12 @@ public class PaymentService {
             return new PaymentStatusInfo(false, false, false, false, false);
         }
 
-        List<Payment> paidPayments = paymentRepository.findByUserAndRouteNameAndStatus(
-            user, busPass.getSelectedRoute(), PaymentStatus.PAID);
-        
-        boolean hasFullPayment = paidPayments.stream()
-            .anyMatch(p -> p.getIsFullPayment() != null && p.getIsFullPayment());
-        
-        boolean hasInstallment1 = paidPayments.stream()
-            .anyMatch(p -> p.getInstallmentNumber() != null && p.getInstallmentNumber() == 1);
-        boolean hasInstallment2 = paidPayments.stream()
-            .anyMatch(p -> p.getInstallmentNumber() != null && p.getInstallmentNumber() == 2);
-        boolean hasInstallment3 = paidPayments.stream()
-            .anyMatch(p -> p.getInstallmentNumber() != null && p.getInstallmentNumber() == 3);
-        
+        // Answered from the pass row alone; the mask is kept current by the payment flows
         return new PaymentStatusInfo(
-            hasFullPayment,
-            hasInstallment1,
-            hasInstallment2,
-            hasInstallment3,
+            busPass.hasFullPayment(),
+            busPass.hasPaidInstallment(1),
+            busPass.hasPaidInstallment(2),
+            busPass.hasPaidInstallment(3),
             busPass.isActive()
         );
     }
@@ -281,4 +466,58 @@ public class PaymentService {
             this.busPassActive = busPassActive;
         }
     }
+
+    /**
+     * Inner class to hold one keyset page of payments
+     */
+    public static class PaymentPage {
+        public final List<Payment> payments;
+        // Id to pass as "after" for the next page, or null on the last page
+        public final Long nextCursor;
+
+        public PaymentPage(List<Payment> payments, Long nextCursor) {
+            this.payments = payments;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    /**
+     * Inner class to hold per-status payment sums (in paise) and counts, indexed by status ordinal
+     */
+    public static class PaymentTotals {
+        private final long[] amounts = new long[PaymentStatus.values().length];
+        private final long[] counts = new long[PaymentStatus.values().length];
+
+        void add(PaymentStatus status, long amountPaise, long count) {
+            amounts[status.ordinal()] += amountPaise;
+            counts[status.ordinal()] += count;
+        }
+
+        public long getAmountPaise(PaymentStatus status) {
+            return amounts[status.ordinal()];
+        }
+
+        public BigDecimal getAmount(PaymentStatus status) {
+            return Money.toRupees(getAmountPaise(status));
+        }
+
+        public long getCount(PaymentStatus status) {
+            return counts[status.ordinal()];
+        }
+
+        /**
+         * Sum (in paise) still owed: PENDING and OVERDUE payments
+         */
+        public long getOutstandingPaise() {
+            long total = 0;
+            for (PaymentStatus status : OUTSTANDING_STATUSES) {
+                total += getAmountPaise(status);
+            }
+            return total;
+        }
+
+        public BigDecimal getOutstanding() {
+            return Money.toRupees(getOutstandingPaise());
+        }
+    }
 }
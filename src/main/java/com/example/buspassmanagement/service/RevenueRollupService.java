@@ -0,0 +1,151 @@
+package com.example.buspassmanagement.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.buspassmanagement.model.JobRun;
+import com.example.buspassmanagement.model.Money;
+import com.example.buspassmanagement.model.Payment;
+import com.example.buspassmanagement.model.RevenueRollup;
+import com.example.buspassmanagement.repository.JobRunRepository;
+import com.example.buspassmanagement.repository.RevenueRollupRepository;
+
+/**
+ * Maintains the revenue_rollups table and serves the admin revenue dashboard from it.
+ *
+ * Every PAID transition adds its amount to the day/route/installment bucket in the same
+ * transaction. A nightly job recomputes all buckets before today from the ledger, which
+ * corrects anything the incremental path cannot see (e.g. deleted payments). Today's
+ * buckets are left to the incremental path so the rebuild never races live payments.
+ */
+@Service
+public class RevenueRollupService {
+
+    public static final String JOB_NAME = "revenue-rollup-rebuild";
+
+    @Autowired
+    private RevenueRollupRepository revenueRollupRepository;
+
+    @Autowired
+    private JobRunRepository jobRunRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public RevenueRollupService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Add a payment that just became PAID to its bucket (joins the caller's transaction)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordPayment(Payment payment) {
+        int installment = (Boolean.TRUE.equals(payment.getIsFullPayment()) || payment.getInstallmentNumber() == null)
+            ? RevenueRollup.FULL_PAYMENT
+            : payment.getInstallmentNumber();
+        revenueRollupRepository.increment(payment.getPaymentDate(),
+            payment.getRouteName() != null ? payment.getRouteName() : RevenueRollup.NO_ROUTE,
+            installment, payment.getAmountPaise());
+    }
+
+    /**
+     * Nightly rebuild of every bucket before today (configurable via revenue.rollup.rebuild-cron)
+     */
+    @Scheduled(cron = "${revenue.rollup.rebuild-cron:0 45 2 * * *}")
+    public void scheduledRebuild() {
+        rebuild(LocalDate.now());
+    }
+
+    /**
+     * Recompute the buckets of all days before the given day in one transaction.
+     * Records the run and returns the number of buckets written.
+     */
+    public long rebuild(LocalDate before) {
+        JobRun run = new JobRun();
+        run.setJobName(JOB_NAME);
+        run.setStartedAt(LocalDateTime.now());
+
+        long buckets = 0;
+        try {
+            buckets = transactionTemplate.execute(status -> {
+                revenueRollupRepository.deleteBefore(before);
+                return revenueRollupRepository.rebuildBefore(before);
+            });
+        } catch (Exception e) {
+            String message = String.valueOf(e.getMessage());
+            run.setErrorMessage(message.length() > 500 ? message.substring(0, 500) : message);
+            System.err.println("ERROR rebuilding revenue rollups: " + e.getMessage());
+        }
+
+        run.setRowsAffected(buckets);
+        run.setFinishedAt(LocalDateTime.now());
+        jobRunRepository.save(run);
+
+        System.out.println("Revenue rollup rebuild: " + buckets + " buckets before " + before + ".");
+        return buckets;
+    }
+
+    /**
+     * Revenue between two days (inclusive) per route, installment and day
+     */
+    @Transactional(readOnly = true)
+    public RevenueDashboard getDashboard(LocalDate fromDay, LocalDate toDay) {
+        List<RevenueRollupRepository.DailyRevenue> byDay = revenueRollupRepository.sumByDay(fromDay, toDay);
+        long totalPaise = 0;
+        long totalCount = 0;
+        for (RevenueRollupRepository.DailyRevenue day : byDay) {
+            totalPaise += day.getTotal();
+            totalCount += day.getCount();
+        }
+        return new RevenueDashboard(fromDay, toDay,
+            revenueRollupRepository.sumByRoute(fromDay, toDay),
+            revenueRollupRepository.sumByInstallment(fromDay, toDay),
+            byDay, totalPaise, totalCount);
+    }
+
+    /**
+     * Inner class to hold the dashboard figures
+     */
+    public static class RevenueDashboard {
+        public final LocalDate fromDay;
+        public final LocalDate toDay;
+        public final List<RevenueRollupRepository.RouteRevenue> byRoute;
+        public final List<RevenueRollupRepository.InstallmentRevenue> byInstallment;
+        public final List<RevenueRollupRepository.DailyRevenue> byDay;
+        public final long totalPaise;
+        public final long totalCount;
+
+        public RevenueDashboard(LocalDate fromDay, LocalDate toDay,
+                                List<RevenueRollupRepository.RouteRevenue> byRoute,
+                                List<RevenueRollupRepository.InstallmentRevenue> byInstallment,
+                                List<RevenueRollupRepository.DailyRevenue> byDay,
+                                long totalPaise, long totalCount) {
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.byRoute = byRoute;
+            this.byInstallment = byInstallment;
+            this.byDay = byDay;
+            this.totalPaise = totalPaise;
+            this.totalCount = totalCount;
+        }
+
+        public BigDecimal getTotal() {
+            return Money.toRupees(totalPaise);
+        }
+
+        // Rupees for a paise total, for the page
+        public BigDecimal rupees(long paise) {
+            return Money.toRupees(paise);
+        }
+    }
+}
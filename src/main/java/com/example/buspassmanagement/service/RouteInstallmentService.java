@@ -6,6 +6,8 @@ import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.example.buspassmanagement.model.RouteInstallment;
 import com.example.buspassmanagement.repository.RouteInstallmentRepository;
@@ -16,6 +18,12 @@ public class RouteInstallmentService {
     @Autowired
     private RouteInstallmentRepository routeInstallmentRepository;
 
+    @Autowired
+    private InstallmentScheduleService installmentScheduleService;
+
+    @Autowired
+    private PassTokenService passTokenService;
+
     /**
      * Get all route installment configurations
      */
@@ -44,7 +52,17 @@ public class RouteInstallmentService {
     public RouteInstallment save(RouteInstallment routeInstallment) {
         // Calculate total fee before saving
         routeInstallment.calculateTotalFee();
-        return routeInstallmentRepository.save(routeInstallment);
+        RouteInstallment saved = routeInstallmentRepository.save(routeInstallment);
+
+        // Generate the students' PENDING installments once the configuration is committed
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                passTokenService.refreshRouteIds();
+                installmentScheduleService.startGeneration(saved);
+            }
+        });
+        return saved;
     }
 
     /**
@@ -53,6 +71,13 @@ public class RouteInstallmentService {
     @Transactional
     public void deleteById(Long id) {
         routeInstallmentRepository.deleteById(id);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                passTokenService.refreshRouteIds();
+            }
+        });
     }
 
     /**
@@ -0,0 +1,355 @@
+package com.example.buspassmanagement.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.example.buspassmanagement.model.JobRun;
+import com.example.buspassmanagement.model.Money;
+import com.example.buspassmanagement.repository.JobRunRepository;
+
+/**
+ * Reconciles the PAID payments on our ledger against the gateway's daily settlement file.
+ *
+ * The ledger for the date window is streamed from the database into a primitive
+ * PaymentAmountIndex, then the settlement file is read through a FileChannel in fixed
+ * 1 MB chunks and parsed byte by byte, so heap use depends on the ledger window and
+ * not on the size of the file. Every mismatch is written to a report CSV.
+ *
+ * Settlement files are delivered by the gateway into an inbox directory on the server
+ * (payments.reconciliation.inbox-dir) and picked from there by name, so they never pass
+ * through an HTTP upload.
+ *
+ * Settlement file columns: payment_id,gateway_reference,amount,settled_on
+ * (an optional header line is skipped).
+ */
+@Service
+public class SettlementReconciliationService {
+
+    public static final String JOB_NAME = "settlement-reconciliation";
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_LINE_LENGTH = 4096;
+    // Plain file names only, so a request cannot reach outside the inbox
+    private static final String SETTLEMENT_FILE_NAME = "[0-9A-Za-z][0-9A-Za-z._-]*\\.csv";
+    private static final DateTimeFormatter REPORT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    public enum MismatchType { MISSING_IN_LEDGER, MISSING_IN_SETTLEMENT, DUPLICATE, AMOUNT_DIFFERS, MALFORMED }
+
+    @Autowired
+    private JobRunRepository jobRunRepository;
+
+    @Value("${payments.reconciliation.report-dir:${java.io.tmpdir}/settlement-reports}")
+    private String reportDir;
+
+    @Value("${payments.reconciliation.inbox-dir:${java.io.tmpdir}/settlement-inbox}")
+    private String inboxDir;
+
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    public SettlementReconciliationService(DataSource dataSource) {
+        // MySQL Connector/J streams rows one at a time instead of buffering the result set
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    /**
+     * Reconcile a settlement file against the payments PAID between from and to (inclusive).
+     * Records the run and returns the summary; details are in the report file.
+     */
+    public ReconciliationReport reconcile(Path settlementFile, LocalDate from, LocalDate to) throws IOException {
+        long started = System.nanoTime();
+        JobRun run = new JobRun();
+        run.setJobName(JOB_NAME);
+        run.setStartedAt(LocalDateTime.now());
+
+        try {
+            PaymentAmountIndex ledger = loadLedger(from, to);
+
+            Files.createDirectories(Paths.get(reportDir));
+            Path reportFile = Paths.get(reportDir, "reconciliation-" + from + "-" + to + "-"
+                + LocalDateTime.now().format(REPORT_TIMESTAMP) + ".csv");
+
+            ReconciliationReport report = new ReconciliationReport(reportFile, ledger.size());
+            try (Writer writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+                writer.write("type,line,payment_id,gateway_reference,ledger_amount,settled_amount\n");
+                new SettlementFileReader(ledger, report, writer).read(settlementFile);
+
+                ledger.forEachUnmatched((paymentId, amount) -> {
+                    report.record(MismatchType.MISSING_IN_SETTLEMENT);
+                    writer.write(MismatchType.MISSING_IN_SETTLEMENT + ",," + paymentId + ",," + Money.format(amount) + ",\n");
+                });
+            }
+
+            report.elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+            run.setRowsAffected(report.getMismatches());
+            System.out.println("Settlement reconciliation " + from + " to " + to + ": " + report.lines
+                + " lines, " + report.matched + " matched, " + report.getMismatches() + " mismatches in "
+                + report.elapsedMillis + " ms.");
+            return report;
+
+        } catch (IOException | RuntimeException e) {
+            String message = String.valueOf(e.getMessage());
+            run.setErrorMessage(message.length() > 500 ? message.substring(0, 500) : message);
+            System.err.println("ERROR during settlement reconciliation: " + e.getMessage());
+            throw e;
+        } finally {
+            run.setFinishedAt(LocalDateTime.now());
+            jobRunRepository.save(run);
+        }
+    }
+
+    /**
+     * Report file produced by an earlier run, or null if the name is not one of ours
+     */
+    public Path findReport(String fileName) {
+        if (!fileName.matches("reconciliation-[0-9A-Za-z-]+\\.csv")) {
+            return null;
+        }
+        Path report = Paths.get(reportDir).resolve(fileName);
+        return Files.isRegularFile(report) ? report : null;
+    }
+
+    /**
+     * Names of the settlement files waiting in the inbox, newest name first
+     */
+    public List<String> listSettlementFiles() throws IOException {
+        Path inbox = Paths.get(inboxDir);
+        if (!Files.isDirectory(inbox)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(inbox)) {
+            return files
+                .filter(Files::isRegularFile)
+                .map(file -> file.getFileName().toString())
+                .filter(name -> name.matches(SETTLEMENT_FILE_NAME))
+                .sorted(Comparator.reverseOrder())
+                .toList();
+        }
+    }
+
+    /**
+     * Settlement file in the inbox, or null if the name is not a settlement file there
+     */
+    public Path findSettlementFile(String fileName) {
+        if (fileName == null || !fileName.matches(SETTLEMENT_FILE_NAME)) {
+            return null;
+        }
+        Path file = Paths.get(inboxDir).resolve(fileName);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    private PaymentAmountIndex loadLedger(LocalDate from, LocalDate to) {
+        PaymentAmountIndex ledger = new PaymentAmountIndex();
+        streamingJdbcTemplate.query(
+            "SELECT id, amount_paise FROM payments WHERE status = 'PAID' AND payment_date BETWEEN ? AND ?",
+            rs -> {
+                ledger.put(rs.getLong("id"), rs.getLong("amount_paise"));
+            },
+            Date.valueOf(from), Date.valueOf(to));
+        return ledger;
+    }
+
+    /**
+     * Single pass over the settlement file. Lines are assembled from the read buffer
+     * into a reusable byte array and parsed in place; Strings are only created for
+     * the (rare) lines that end up in the report.
+     */
+    private static class SettlementFileReader {
+        private final PaymentAmountIndex ledger;
+        private final ReconciliationReport report;
+        private final Writer writer;
+        private final byte[] line = new byte[MAX_LINE_LENGTH];
+
+        SettlementFileReader(PaymentAmountIndex ledger, ReconciliationReport report, Writer writer) {
+            this.ledger = ledger;
+            this.report = report;
+            this.writer = writer;
+        }
+
+        void read(Path file) throws IOException {
+            byte[] chunk = new byte[READ_BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            long lineNumber = 0;
+            int length = 0;
+            boolean overflow = false;
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                int read;
+                while ((read = channel.read(buffer.clear())) != -1) {
+                    for (int i = 0; i < read; i++) {
+                        byte b = chunk[i];
+                        if (b == '\n') {
+                            processLine(++lineNumber, length, overflow);
+                            length = 0;
+                            overflow = false;
+                        } else if (b != '\r') {
+                            if (length < MAX_LINE_LENGTH) {
+                                line[length++] = b;
+                            } else {
+                                overflow = true;
+                            }
+                        }
+                    }
+                }
+            }
+            if (length > 0) {
+                processLine(++lineNumber, length, overflow);
+            }
+        }
+
+        private void processLine(long lineNumber, int length, boolean overflow) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            // Header line
+            if (lineNumber == 1 && (line[0] < '0' || line[0] > '9')) {
+                return;
+            }
+            report.lines++;
+
+            // Field boundaries: payment_id , gateway_reference , amount , settled_on
+            int firstComma = indexOf(',', 0, length);
+            int secondComma = firstComma < 0 ? -1 : indexOf(',', firstComma + 1, length);
+            int thirdComma = secondComma < 0 ? -1 : indexOf(',', secondComma + 1, length);
+            int amountEnd = thirdComma < 0 ? length : thirdComma;
+
+            long paymentId = firstComma > 0 ? parseId(0, firstComma) : -1;
+            long amount = secondComma > 0 ? parseAmount(secondComma + 1, amountEnd) : Long.MIN_VALUE;
+            if (overflow || paymentId <= 0 || amount == Long.MIN_VALUE) {
+                report.record(MismatchType.MALFORMED);
+                writer.write(MismatchType.MALFORMED + "," + lineNumber + ",,,,\n");
+                return;
+            }
+
+            int slot = ledger.find(paymentId);
+            MismatchType mismatch;
+            long ledgerAmount = 0;
+            if (slot < 0) {
+                mismatch = MismatchType.MISSING_IN_LEDGER;
+            } else {
+                ledgerAmount = ledger.amountAt(slot);
+                if (ledger.hit(slot) > 0) {
+                    mismatch = MismatchType.DUPLICATE;
+                } else if (ledgerAmount != amount) {
+                    mismatch = MismatchType.AMOUNT_DIFFERS;
+                } else {
+                    report.matched++;
+                    return;
+                }
+            }
+
+            report.record(mismatch);
+            String reference = new String(line, firstComma + 1, secondComma - firstComma - 1, StandardCharsets.UTF_8);
+            writer.write(mismatch + "," + lineNumber + "," + paymentId + "," + reference + ","
+                + (slot < 0 ? "" : Money.format(ledgerAmount)) + "," + Money.format(amount) + "\n");
+        }
+
+        private int indexOf(char c, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (line[i] == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private long parseId(int from, int to) {
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                byte b = line[i];
+                if (b < '0' || b > '9' || value > Long.MAX_VALUE / 10) {
+                    return -1;
+                }
+                value = value * 10 + (b - '0');
+            }
+            return value;
+        }
+
+        // Decimal rupees with up to two fraction digits, parsed straight to paise
+        private long parseAmount(int from, int to) {
+            boolean negative = from < to && line[from] == '-';
+            int i = negative ? from + 1 : from;
+            if (i >= to) {
+                return Long.MIN_VALUE;
+            }
+            long value = 0;
+            int fractionDigits = -1;
+            for (; i < to; i++) {
+                byte b = line[i];
+                if (b == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else if (b >= '0' && b <= '9' && fractionDigits < 2 && value < Long.MAX_VALUE / 100) {
+                    value = value * 10 + (b - '0');
+                    if (fractionDigits >= 0) {
+                        fractionDigits++;
+                    }
+                } else {
+                    return Long.MIN_VALUE;
+                }
+            }
+            for (int d = Math.max(fractionDigits, 0); d < 2; d++) {
+                value *= 10;
+            }
+            return negative ? -value : value;
+        }
+    }
+
+    /**
+     * Summary of a reconciliation run
+     */
+    public static class ReconciliationReport {
+        public final Path reportFile;
+        public final long ledgerEntries;
+        long lines;
+        long matched;
+        long elapsedMillis;
+        private final long[] counts = new long[MismatchType.values().length];
+
+        ReconciliationReport(Path reportFile, long ledgerEntries) {
+            this.reportFile = reportFile;
+            this.ledgerEntries = ledgerEntries;
+        }
+
+        void record(MismatchType type) {
+            counts[type.ordinal()]++;
+        }
+
+        public long getLines() { return lines; }
+        public long getMatched() { return matched; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public String getReportName() { return reportFile.getFileName().toString(); }
+
+        public long getCount(MismatchType type) {
+            return counts[type.ordinal()];
+        }
+
+        public long getMismatches() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+-- Indexes for the predicates used on every payment and notice page load.
+-- (user_id, route_name, installment_number) lookups are already served by
+-- uk_payments_user_route_installment, so no separate index is added for them.
+
+-- PaymentRepository.findByUserAndRouteNameAndStatus, findInstallmentMask and the
+-- pass-mask rebuild subquery: WHERE user_id = ? AND route_name = ? AND status = ?
+CREATE INDEX idx_payments_user_route_status ON payments (user_id, route_name, status);
+
+-- Installment schedule generation: WHERE selected_route = ? AND id > ? ORDER BY id
+-- (InnoDB secondary indexes end with the primary key, so this also serves the ordering)
+CREATE INDEX idx_passes_selected_route ON passes (selected_route);
+
+-- NoticeRepository.findAllByOrderByTimestampDesc
+CREATE INDEX idx_notices_timestamp ON notices (timestamp);
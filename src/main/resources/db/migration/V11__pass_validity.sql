@@ -0,0 +1,18 @@
+-- Databases first created by ddl-auto hold status as ENUM('ACTIVE','INACTIVE'),
+-- which has no room for EXPIRED
+ALTER TABLE passes MODIFY status VARCHAR(20) NOT NULL;
+
+-- Validity window of a bus pass. A NULL valid_until never expires.
+ALTER TABLE passes
+    ADD COLUMN valid_from DATE NULL,
+    ADD COLUMN valid_until DATE NULL;
+
+-- Existing active passes run until their route's final installment deadline,
+-- so passes from earlier years are picked up by the first expiry sweep
+UPDATE passes p
+    JOIN route_installments r ON r.route_name = p.selected_route
+SET p.valid_until = r.installment3_deadline
+WHERE p.status = 'ACTIVE';
+
+-- PassValidityService expiry sweep: WHERE status = 'ACTIVE' AND valid_until < ?
+CREATE INDEX idx_passes_status_valid_until ON passes (status, valid_until);
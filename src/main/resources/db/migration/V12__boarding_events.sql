@@ -0,0 +1,10 @@
+-- One row per pass scan at boarding, written in JDBC batches by BoardingEventService.
+-- Insert-heavy: no foreign keys and no secondary indexes beyond the ridership lookup.
+CREATE TABLE IF NOT EXISTS boarding_events (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    pass_id BIGINT NOT NULL,
+    bus_id BIGINT NOT NULL,
+    tapped_at DATETIME(3) NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_boarding_events_bus_tapped (bus_id, tapped_at)
+) ENGINE = InnoDB;
@@ -0,0 +1,19 @@
+-- Change log of bus pass status transitions for the offline validator sync feed.
+-- The auto-increment id is the change version devices sync from.
+CREATE TABLE IF NOT EXISTS pass_status_changes (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    pass_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    route_name VARCHAR(255),
+    valid_until DATE,
+    changed_at DATETIME(3) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+-- Seed the log with the passes that are active today, so a device syncing from
+-- version 0 gets the full current state
+INSERT INTO pass_status_changes (pass_id, status, route_name, valid_until, changed_at)
+SELECT id, status, selected_route, valid_until, NOW(3)
+FROM passes
+WHERE status = 'ACTIVE'
+ORDER BY id;
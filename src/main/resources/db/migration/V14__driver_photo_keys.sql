@@ -0,0 +1,4 @@
+-- Driver photos move from base64 text in drivers.image to the content-addressed blob
+-- store; drivers keep only the blob key. DriverPhotoMigration moves the existing
+-- photos at startup and clears drivers.image row by row.
+ALTER TABLE drivers ADD COLUMN image_key VARCHAR(64) NULL;
@@ -0,0 +1,96 @@
+-- Baseline schema: the tables as the JPA entities created them (ddl-auto) before the
+-- schema moved to Flyway. Existing databases are baselined at version 0, so this script
+-- runs there too; CREATE TABLE IF NOT EXISTS makes it a no-op on them. Every later
+-- change is its own ALTER migration (V2 onwards), applied the same way to existing and
+-- new databases.
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    name VARCHAR(255) NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    phone VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    role VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_email UNIQUE (email),
+    CONSTRAINT uk_users_phone UNIQUE (phone)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS buses (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    bus_number VARCHAR(255) NOT NULL,
+    route VARCHAR(255) NOT NULL,
+    seats INT NOT NULL,
+    schedule VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_buses_bus_number UNIQUE (bus_number)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS drivers (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    name VARCHAR(255),
+    email VARCHAR(255),
+    phone VARCHAR(255),
+    image LONGTEXT,
+    bus_id BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_drivers_email UNIQUE (email),
+    CONSTRAINT fk_drivers_bus FOREIGN KEY (bus_id) REFERENCES buses (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS faqs (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    question TEXT NOT NULL,
+    answer TEXT NOT NULL,
+    display_order INT,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS notices (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    message TEXT NOT NULL,
+    timestamp DATETIME(6) NOT NULL,
+    bus_id BIGINT,
+    posted_by_user_id BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_notices_bus FOREIGN KEY (bus_id) REFERENCES buses (id),
+    CONSTRAINT fk_notices_posted_by FOREIGN KEY (posted_by_user_id) REFERENCES users (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS passes (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    selected_route VARCHAR(255),
+    status VARCHAR(20) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_passes_user UNIQUE (user_id),
+    CONSTRAINT fk_passes_user FOREIGN KEY (user_id) REFERENCES users (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS route_installments (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    route_name VARCHAR(255) NOT NULL,
+    installment1_amount DOUBLE NOT NULL,
+    installment1_deadline DATE NOT NULL,
+    installment2_amount DOUBLE NOT NULL,
+    installment2_deadline DATE NOT NULL,
+    installment3_amount DOUBLE NOT NULL,
+    installment3_deadline DATE NOT NULL,
+    total_fee DOUBLE NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_route_installments_route_name UNIQUE (route_name)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS payments (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    amount DOUBLE NOT NULL,
+    due_date DATE NOT NULL,
+    status VARCHAR(15) NOT NULL,
+    route_name VARCHAR(255),
+    installment_number INT,
+    payment_date DATE,
+    is_full_payment BIT(1) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_payments_user FOREIGN KEY (user_id) REFERENCES users (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,16 @@
+-- Paid installments of the pass's selected route, kept on the pass so status checks
+-- only read this row: bits 0/1/2 = installment 1/2/3, bit 3 = full payment
+-- (BusPass.MASK_* constants).
+ALTER TABLE passes ADD COLUMN paid_installment_mask INT NOT NULL DEFAULT 0;
+
+-- Fill it from the payments already on the ledger
+UPDATE passes b
+SET b.paid_installment_mask = (
+    SELECT COALESCE(
+        MAX(CASE WHEN p.installment_number = 1 THEN 1 ELSE 0 END) +
+        MAX(CASE WHEN p.installment_number = 2 THEN 2 ELSE 0 END) +
+        MAX(CASE WHEN p.installment_number = 3 THEN 4 ELSE 0 END) +
+        MAX(CASE WHEN p.is_full_payment = 1 THEN 8 ELSE 0 END), 0)
+    FROM payments p
+    WHERE p.user_id = b.user_id AND p.route_name = b.selected_route AND p.status = 'PAID'
+);
@@ -0,0 +1,13 @@
+-- Audit record of background job runs (overdue sweeper and later jobs)
+CREATE TABLE IF NOT EXISTS job_runs (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    job_name VARCHAR(50) NOT NULL,
+    started_at DATETIME(6) NOT NULL,
+    finished_at DATETIME(6),
+    rows_affected BIGINT NOT NULL,
+    error_message VARCHAR(500),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+-- Overdue sweeper: WHERE status = 'PENDING' AND due_date < ?
+CREATE INDEX idx_payments_status_due_date ON payments (status, due_date);
@@ -0,0 +1,19 @@
+-- At most one record per (user, route, installment), so concurrent payments cannot both
+-- insert a row. Full payments have no installment number and are not constrained.
+
+-- Earlier code could record the same installment more than once. Unpaid copies are
+-- removed first, keeping the PAID row or else the oldest one. Two PAID rows for the same
+-- installment (a double charge) are left alone, so the key below fails on them and the
+-- migration stops until they have been resolved by hand.
+DELETE p
+FROM payments p
+JOIN payments q
+    ON q.user_id = p.user_id
+    AND q.route_name = p.route_name
+    AND q.installment_number = p.installment_number
+    AND q.id <> p.id
+WHERE p.status <> 'PAID'
+    AND (q.status = 'PAID' OR q.id < p.id);
+
+ALTER TABLE payments
+    ADD CONSTRAINT uk_payments_user_route_installment UNIQUE (user_id, route_name, installment_number);
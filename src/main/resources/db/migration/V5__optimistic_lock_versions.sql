@@ -0,0 +1,3 @@
+-- Optimistic lock versions (@Version) for concurrent read-modify-write updates
+ALTER TABLE passes ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE payments ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,19 @@
+-- Transactional outbox: payment side effects recorded in the payment transaction
+-- and delivered afterwards by OutboxDispatcher
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    event_type VARCHAR(30) NOT NULL,
+    user_id BIGINT NOT NULL,
+    route_name VARCHAR(255),
+    installment_number INT,
+    amount_paise BIGINT,
+    status VARCHAR(15) NOT NULL,
+    attempts INT NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    available_at DATETIME(6) NOT NULL,
+    claimed_at DATETIME(6),
+    processed_at DATETIME(6),
+    last_error VARCHAR(500),
+    PRIMARY KEY (id),
+    INDEX idx_outbox_status_available (status, available_at)
+) ENGINE = InnoDB;
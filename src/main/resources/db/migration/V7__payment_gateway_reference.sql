@@ -0,0 +1,5 @@
+-- Gateway charge reference; set while a charge awaits its settlement callback.
+-- Unique so a redelivered callback can only ever match one payment.
+ALTER TABLE payments
+    ADD COLUMN gateway_reference VARCHAR(64) NULL,
+    ADD CONSTRAINT uk_payments_gateway_reference UNIQUE (gateway_reference);
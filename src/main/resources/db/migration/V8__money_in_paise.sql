@@ -0,0 +1,27 @@
+-- Money moves from DOUBLE rupees to BIGINT paise. Values are rounded half-up through
+-- DECIMAL, so a stored 12.345 becomes 1235 rather than depending on binary rounding.
+
+ALTER TABLE payments ADD COLUMN amount_paise BIGINT NULL;
+UPDATE payments SET amount_paise = ROUND(CAST(amount AS DECIMAL(20, 4)) * 100);
+ALTER TABLE payments MODIFY amount_paise BIGINT NOT NULL;
+ALTER TABLE payments DROP COLUMN amount;
+
+ALTER TABLE route_installments
+    ADD COLUMN installment1_amount_paise BIGINT NULL,
+    ADD COLUMN installment2_amount_paise BIGINT NULL,
+    ADD COLUMN installment3_amount_paise BIGINT NULL,
+    ADD COLUMN total_fee_paise BIGINT NULL;
+UPDATE route_installments SET
+    installment1_amount_paise = ROUND(CAST(installment1_amount AS DECIMAL(20, 4)) * 100),
+    installment2_amount_paise = ROUND(CAST(installment2_amount AS DECIMAL(20, 4)) * 100),
+    installment3_amount_paise = ROUND(CAST(installment3_amount AS DECIMAL(20, 4)) * 100),
+    total_fee_paise = ROUND(CAST(total_fee AS DECIMAL(20, 4)) * 100);
+ALTER TABLE route_installments
+    MODIFY installment1_amount_paise BIGINT NOT NULL,
+    MODIFY installment2_amount_paise BIGINT NOT NULL,
+    MODIFY installment3_amount_paise BIGINT NOT NULL,
+    MODIFY total_fee_paise BIGINT NOT NULL,
+    DROP COLUMN installment1_amount,
+    DROP COLUMN installment2_amount,
+    DROP COLUMN installment3_amount,
+    DROP COLUMN total_fee;
@@ -0,0 +1,11 @@
+-- Daily revenue per route and installment, maintained by RevenueRollupService
+CREATE TABLE IF NOT EXISTS revenue_rollups (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    day DATE NOT NULL,
+    route_name VARCHAR(255) NOT NULL,
+    installment_number INT NOT NULL,
+    amount_paise BIGINT NOT NULL,
+    payment_count BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_revenue_rollups_day_route_installment UNIQUE (day, route_name, installment_number)
+) ENGINE = InnoDB;
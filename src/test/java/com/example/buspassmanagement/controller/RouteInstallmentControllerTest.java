@@ -0,0 +1,88 @@
+package com.example.buspassmanagement.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.example.buspassmanagement.model.RouteInstallment;
+import com.example.buspassmanagement.service.BusService;
+import com.example.buspassmanagement.service.InstallmentScheduleService;
+import com.example.buspassmanagement.service.RouteInstallmentService;
+
+@ExtendWith(MockitoExtension.class)
+class RouteInstallmentControllerTest {
+
+    @Mock
+    private RouteInstallmentService routeInstallmentService;
+
+    @Mock
+    private BusService busService;
+
+    @Mock
+    private InstallmentScheduleService installmentScheduleService;
+
+    @InjectMocks
+    private RouteInstallmentController routeInstallmentController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(routeInstallmentController).build();
+    }
+
+    private static MockHttpServletRequestBuilder addForm(String amount1, String amount2, String amount3) {
+        return post("/route-installments/add")
+            .param("routeName", "Route A")
+            .param("installment1Amount", amount1)
+            .param("installment1Deadline", "2026-11-30")
+            .param("installment2Amount", amount2)
+            .param("installment2Deadline", "2027-01-31")
+            .param("installment3Amount", amount3)
+            .param("installment3Deadline", "2027-03-31");
+    }
+
+    @Test
+    void blankAmountIsRejectedOnItsField() throws Exception {
+        mockMvc.perform(addForm("", "1500.00", "1500.00"))
+            .andExpect(view().name("route-installment-add"))
+            .andExpect(model().attributeHasFieldErrorCode("routeInstallment", "installment1Amount", "NotNull"));
+
+        verify(routeInstallmentService, never()).save(any(RouteInstallment.class));
+    }
+
+    @Test
+    void negativeAmountIsRejectedOnItsField() throws Exception {
+        mockMvc.perform(addForm("1500.00", "-10", "1500.00"))
+            .andExpect(view().name("route-installment-add"))
+            .andExpect(model().attributeHasFieldErrorCode("routeInstallment", "installment2Amount", "DecimalMin"));
+
+        verify(routeInstallmentService, never()).save(any(RouteInstallment.class));
+    }
+
+    @Test
+    void validAmountsAreSavedInPaise() throws Exception {
+        mockMvc.perform(addForm("1500.50", "0", "1500"))
+            .andExpect(view().name("redirect:/route-installments"))
+            .andExpect(model().hasNoErrors());
+
+        verify(routeInstallmentService).save(argThat(route ->
+            route.getInstallment1AmountPaise() == 150050L
+                && route.getInstallment2AmountPaise() == 0L
+                && route.getInstallment3AmountPaise() == 150000L));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.buspassmanagement.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+class BusPassTest {
+
+    private static BusPass withMask(int mask) {
+        BusPass busPass = new BusPass();
+        busPass.setPaidInstallmentMask(mask);
+        return busPass;
+    }
+
+    @Test
+    void emptyMaskHasNothingPaid() {
+        BusPass busPass = withMask(0);
+
+        assertThat(busPass.hasPaidInstallment(1)).isFalse();
+        assertThat(busPass.hasPaidInstallment(2)).isFalse();
+        assertThat(busPass.hasPaidInstallment(3)).isFalse();
+        assertThat(busPass.hasFullPayment()).isFalse();
+        assertThat(busPass.isFullyPaid()).isFalse();
+    }
+
+    @Test
+    void eachInstallmentHasItsOwnBit() {
+        BusPass busPass = withMask(BusPass.MASK_INSTALLMENT_2);
+
+        assertThat(busPass.hasPaidInstallment(1)).isFalse();
+        assertThat(busPass.hasPaidInstallment(2)).isTrue();
+        assertThat(busPass.hasPaidInstallment(3)).isFalse();
+        assertThat(busPass.hasFullPayment()).isFalse();
+    }
+
+    @Test
+    void maskBitsMatchTheLedgerQuery() {
+        // PaymentRepository.findInstallmentMask adds 1, 2, 4 and 8
+        assertThat(BusPass.MASK_INSTALLMENT_1).isEqualTo(1);
+        assertThat(BusPass.MASK_INSTALLMENT_2).isEqualTo(2);
+        assertThat(BusPass.MASK_INSTALLMENT_3).isEqualTo(4);
+        assertThat(BusPass.MASK_FULL_PAYMENT).isEqualTo(8);
+        assertThat(BusPass.MASK_ALL_INSTALLMENTS).isEqualTo(7);
+    }
+
+    @Test
+    void twoOfThreeInstallmentsIsNotFullyPaid() {
+        BusPass busPass = withMask(BusPass.MASK_INSTALLMENT_1 | BusPass.MASK_INSTALLMENT_3);
+
+        assertThat(busPass.isFullyPaid()).isFalse();
+    }
+
+    @Test
+    void allInstallmentsIsFullyPaid() {
+        BusPass busPass = withMask(BusPass.MASK_ALL_INSTALLMENTS);
+
+        assertThat(busPass.isFullyPaid()).isTrue();
+        assertThat(busPass.hasFullPayment()).isFalse();
+    }
+
+    @Test
+    void fullPaymentAloneIsFullyPaid() {
+        BusPass busPass = withMask(BusPass.MASK_FULL_PAYMENT);
+
+        assertThat(busPass.hasFullPayment()).isTrue();
+        assertThat(busPass.isFullyPaid()).isTrue();
+        assertThat(busPass.hasPaidInstallment(1)).isFalse();
+    }
+
+    @Test
+    void activePassPastItsValidityCountsAsExpired() {
+        BusPass busPass = new BusPass();
+        busPass.activate(LocalDate.now().minusMonths(6), LocalDate.now().minusDays(1));
+
+        assertThat(busPass.isActive()).isFalse();
+        assertThat(busPass.isExpired()).isTrue();
+    }
+}
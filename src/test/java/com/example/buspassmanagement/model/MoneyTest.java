@@ -0,0 +1,53 @@
+package com.example.buspassmanagement.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+
+    @Test
+    void wholeAndTwoDecimalRupeesConvertExactly() {
+        assertThat(Money.toPaise(new BigDecimal("1500"))).isEqualTo(150000L);
+        assertThat(Money.toPaise(new BigDecimal("1500.5"))).isEqualTo(150050L);
+        assertThat(Money.toPaise(new BigDecimal("0.01"))).isEqualTo(1L);
+    }
+
+    @Test
+    void fractionsOfAPaisaRoundHalfUp() {
+        assertThat(Money.toPaise(new BigDecimal("12.344"))).isEqualTo(1234L);
+        assertThat(Money.toPaise(new BigDecimal("12.345"))).isEqualTo(1235L);
+        assertThat(Money.toPaise(new BigDecimal("0.005"))).isEqualTo(1L);
+        assertThat(Money.toPaise(new BigDecimal("-12.345"))).isEqualTo(-1235L);
+    }
+
+    @Test
+    void valuesThatAreInexactAsDoublesStillRoundToTheNearestPaisa() {
+        // 0.1 + 0.2 is 0.30000000000000004 as a double
+        assertThat(Money.toPaise(BigDecimal.valueOf(0.1 + 0.2))).isEqualTo(30L);
+        // 1.005 is 1.00499999999999989... as a double; BigDecimal.valueOf uses its shortest decimal form
+        assertThat(Money.toPaise(BigDecimal.valueOf(1.005))).isEqualTo(101L);
+    }
+
+    @Test
+    void nullCountsAsZero() {
+        assertThat(Money.toPaise(null)).isZero();
+    }
+
+    @Test
+    void paiseFormatAsRupeesWithTwoDecimals() {
+        assertThat(Money.toRupees(150050L)).isEqualByComparingTo("1500.50");
+        assertThat(Money.format(150050L)).isEqualTo("1500.50");
+        assertThat(Money.format(5L)).isEqualTo("0.05");
+        assertThat(Money.format(0L)).isEqualTo("0.00");
+    }
+
+    @Test
+    void roundTripKeepsTheAmount() {
+        for (long paise : new long[] { 0L, 1L, 99L, 100L, 123456789L }) {
+            assertThat(Money.toPaise(Money.toRupees(paise))).isEqualTo(paise);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.buspassmanagement.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class BoardingEventServiceTest {
+
+    private static List<BoardingEventService.Tap> taps(int count) {
+        List<BoardingEventService.Tap> taps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            taps.add(new BoardingEventService.Tap(i + 1, 10L, LocalDateTime.now()));
+        }
+        return taps;
+    }
+
+    @Test
+    void batchThatDoesNotFitIsRefusedWhole() {
+        // The writer is not started, so nothing leaves the queue
+        BoardingEventService service = new BoardingEventService(mock(DataSource.class), 5, 100);
+
+        assertThat(service.submit(taps(3))).isTrue();
+        assertThat(service.submit(taps(3))).isFalse();
+        assertThat(service.submit(taps(2))).isTrue();
+        assertThat(service.submit(taps(1))).isFalse();
+        assertThat(service.submit(List.of())).isTrue();
+
+        assertThat(service.getStats())
+            .containsEntry("queued", 5)
+            .containsEntry("accepted", 5L)
+            .containsEntry("rejected", 4L);
+    }
+
+    @Test
+    void concurrentProducersNeverExceedTheCapacity() throws Exception {
+        BoardingEventService service = new BoardingEventService(mock(DataSource.class), 1000, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int t = 0; t < 8; t++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 200; i++) {
+                        service.submit(taps(1));
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(service.getStats())
+            .containsEntry("queued", 1000)
+            .containsEntry("accepted", 1000L)
+            .containsEntry("rejected", 600L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedBatchHoldsItsSlotsUntilItIsWritten() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+            .thenThrow(new DataAccessResourceFailureException("Connection refused"))
+            .thenReturn(new int[][] { { 1, 1 } });
+        BoardingEventService service = new BoardingEventService(mock(DataSource.class), 4, 2);
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+
+        assertThat(service.submit(taps(4))).isTrue();
+        service.start();
+        try {
+            // Until the failed batch is stored, the queue stays full and producers are pushed back
+            assertThat(service.submit(taps(1))).isFalse();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while ((long) service.getStats().get("written") < 4 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+
+            assertThat(service.getStats())
+                .containsEntry("written", 4L)
+                .containsEntry("failedBatches", 1L)
+                .containsEntry("queued", 0);
+            assertThat(service.submit(taps(4))).isTrue();
+        } finally {
+            service.stop();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.buspassmanagement.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class IdempotencyServiceTest {
+
+    private final IdempotencyService idempotencyService = new IdempotencyService();
+
+    @Test
+    void resubmissionReturnsTheFirstResultWithoutRunningAgain() {
+        AtomicInteger runs = new AtomicInteger();
+
+        String first = idempotencyService.execute("key-1", () -> "paid-" + runs.incrementAndGet());
+        String second = idempotencyService.execute("key-1", () -> "paid-" + runs.incrementAndGet());
+
+        assertThat(first).isEqualTo("paid-1");
+        assertThat(second).isEqualTo("paid-1");
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void differentKeysRunSeparately() {
+        AtomicInteger runs = new AtomicInteger();
+
+        idempotencyService.execute("key-1", runs::incrementAndGet);
+        idempotencyService.execute("key-2", runs::incrementAndGet);
+
+        assertThat(runs).hasValue(2);
+    }
+
+    @Test
+    void concurrentResubmissionWaitsForTheFirstResult() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> first = executor.submit(() -> idempotencyService.execute("key-1", () -> {
+                started.countDown();
+                await(release);
+                return runs.incrementAndGet();
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<Integer> second = executor.submit(() -> idempotencyService.execute("key-1", runs::incrementAndGet));
+
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+            assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+            assertThat(runs).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedRequestReleasesTheKeyForARetry() {
+        assertThatThrownBy(() -> idempotencyService.execute("key-1", () -> {
+            throw new IllegalStateException("Gateway unavailable.");
+        })).isInstanceOf(IllegalStateException.class);
+
+        String retried = idempotencyService.execute("key-1", () -> "paid");
+
+        assertThat(retried).isEqualTo("paid");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.buspassmanagement.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class OptimisticRetryExecutorTest {
+
+    private PlatformTransactionManager transactionManager;
+    private OptimisticRetryExecutor retryExecutor;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        retryExecutor = new OptimisticRetryExecutor(transactionManager);
+    }
+
+    @Test
+    void retriesInAFreshTransactionAfterAVersionConflict() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retryExecutor.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new OptimisticLockingFailureException("Row was updated by another transaction");
+            }
+            return "saved";
+        });
+
+        assertThat(result).isEqualTo("saved");
+        assertThat(attempts).hasValue(2);
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void givesUpAfterThreeConflicts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retryExecutor.execute(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("Row was updated by another transaction");
+        })).isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(attempts).hasValue(3);
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    void otherFailuresAreNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retryExecutor.execute(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("This payment has already been paid.");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void joinsAnExistingTransactionWithoutRetrying() {
+        AtomicInteger attempts = new AtomicInteger();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThatThrownBy(() -> retryExecutor.execute(() -> {
+                attempts.incrementAndGet();
+                throw new OptimisticLockingFailureException("Row was updated by another transaction");
+            })).isInstanceOf(OptimisticLockingFailureException.class);
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        assertThat(attempts).hasValue(1);
+        verify(transactionManager, never()).getTransaction(any());
+    }
+}
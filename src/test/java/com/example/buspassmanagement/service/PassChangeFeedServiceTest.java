@@ -0,0 +1,141 @@
+package com.example.buspassmanagement.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.buspassmanagement.model.BusPass;
+import com.example.buspassmanagement.model.PassStatusChange;
+import com.example.buspassmanagement.repository.PassStatusChangeRepository;
+
+@ExtendWith(MockitoExtension.class)
+class PassChangeFeedServiceTest {
+
+    @Mock
+    private PassStatusChangeRepository passStatusChangeRepository;
+
+    @Mock
+    private PassTokenService passTokenService;
+
+    @InjectMocks
+    private PassChangeFeedService passChangeFeedService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(passChangeFeedService, "pageSize", 2);
+    }
+
+    private static PassStatusChange change(long version, long passId, BusPass.PassStatus status,
+                                           String route, LocalDate validUntil) {
+        return new PassStatusChange(version, passId, status, route, validUntil, LocalDateTime.now());
+    }
+
+    @Test
+    void pageIsEncodedInTheFeedFormat() throws Exception {
+        LocalDate validUntil = LocalDate.of(2027, 3, 31);
+        when(passStatusChangeRepository.findMaxId()).thenReturn(12L);
+        when(passStatusChangeRepository.findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(eq(10L), eq(12L), any()))
+            .thenReturn(List.of(
+                change(11L, 501L, BusPass.PassStatus.ACTIVE, "Route A", validUntil),
+                change(12L, 502L, BusPass.PassStatus.INACTIVE, null, null)));
+        when(passTokenService.routeIds()).thenReturn(Map.of("Route A", 3));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long last = passChangeFeedService.writeChangesSince(10L, out);
+
+        assertThat(last).isEqualTo(12L);
+        try (DataInputStream data = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())))) {
+            assertThat(data.readByte()).isEqualTo((byte) 1);
+            assertThat(data.readLong()).isEqualTo(12L);
+            assertThat(data.readBoolean()).isFalse();
+            assertThat(data.readInt()).isEqualTo(2);
+
+            assertThat(data.readLong()).isEqualTo(11L);
+            assertThat(data.readLong()).isEqualTo(501L);
+            assertThat(data.readByte()).isEqualTo((byte) BusPass.PassStatus.ACTIVE.ordinal());
+            assertThat(data.readInt()).isEqualTo(3);
+            assertThat(data.readInt()).isEqualTo((int) validUntil.toEpochDay());
+
+            assertThat(data.readLong()).isEqualTo(12L);
+            assertThat(data.readLong()).isEqualTo(502L);
+            assertThat(data.readByte()).isEqualTo((byte) BusPass.PassStatus.INACTIVE.ordinal());
+            assertThat(data.readInt()).isZero();
+            assertThat(data.readInt()).isEqualTo(-1);
+
+            assertThat(data.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    void fullPageSaysMoreFollow() throws Exception {
+        when(passStatusChangeRepository.findMaxId()).thenReturn(3L);
+        when(passStatusChangeRepository.findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(eq(0L), eq(3L), any()))
+            .thenReturn(List.of(
+                change(1L, 501L, BusPass.PassStatus.ACTIVE, null, null),
+                change(2L, 502L, BusPass.PassStatus.ACTIVE, null, null),
+                change(3L, 503L, BusPass.PassStatus.ACTIVE, null, null)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long last = passChangeFeedService.writeChangesSince(0L, out);
+
+        assertThat(last).isEqualTo(2L);
+        try (DataInputStream data = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())))) {
+            data.readByte();
+            assertThat(data.readLong()).isEqualTo(2L);
+            assertThat(data.readBoolean()).isTrue();
+            assertThat(data.readInt()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void emptyPageKeepsTheDeviceVersion() throws Exception {
+        when(passStatusChangeRepository.findMaxId()).thenReturn(null);
+
+        long last = passChangeFeedService.writeChangesSince(7L, new ByteArrayOutputStream());
+
+        assertThat(last).isEqualTo(7L);
+    }
+
+    @Test
+    void feedStaysBelowAWriterUntilItsTransactionCompletes() {
+        when(passStatusChangeRepository.findMaxId()).thenReturn(20L, 25L, 25L);
+        assertThat(passChangeFeedService.servableVersion()).isEqualTo(20L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            BusPass busPass = new BusPass();
+            busPass.setId(501L);
+            passChangeFeedService.record(busPass);
+
+            // Another writer committed version 25 meanwhile, but this one may still commit 21
+            assertThat(passChangeFeedService.servableVersion()).isEqualTo(20L);
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+            assertThat(passChangeFeedService.servableVersion()).isEqualTo(25L);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.buspassmanagement.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.buspassmanagement.model.BusPass;
+import com.example.buspassmanagement.model.RouteInstallment;
+import com.example.buspassmanagement.repository.RouteInstallmentRepository;
+
+class PassTokenServiceTest {
+
+    private static final String SECRET = "test-pass-token-secret-0123456789abcdef";
+
+    private final PassTokenService passTokenService = new PassTokenService(SECRET, 1);
+
+    @Test
+    void issuedTokenVerifiesWithItsFields() {
+        String token = passTokenService.issue(42L, 7, 3L, true, null);
+
+        PassTokenService.Verification verification = passTokenService.verify(token);
+
+        assertThat(token).hasSize(51);
+        assertThat(verification.outcome).isEqualTo(PassTokenService.Outcome.VALID);
+        assertThat(verification.valid).isTrue();
+        assertThat(verification.passId).isEqualTo(42L);
+        assertThat(verification.routeId).isEqualTo(7);
+        assertThat(verification.validUntil).isEqualTo(LocalDate.now().plusDays(1));
+    }
+
+    @Test
+    void samePassStateGivesTheSameToken() {
+        assertThat(passTokenService.issue(42L, 7, 3L, true, null)).isEqualTo(passTokenService.issue(42L, 7, 3L, true, null));
+    }
+
+    @Test
+    void tamperedTokenFailsTheSignature() {
+        String token = passTokenService.issue(42L, 7, 3L, true, null);
+        // Character 10 lies inside the pass id
+        char replaced = token.charAt(10) == 'A' ? 'B' : 'A';
+        String tampered = token.substring(0, 10) + replaced + token.substring(11);
+
+        assertThat(passTokenService.verify(tampered).outcome).isEqualTo(PassTokenService.Outcome.BAD_SIGNATURE);
+        assertThat(passTokenService.verify(tampered).passId).isNull();
+    }
+
+    @Test
+    void tokenSignedWithAnotherSecretFailsTheSignature() {
+        PassTokenService other = new PassTokenService("another-pass-token-secret-0123456789abc", 1);
+
+        String token = other.issue(42L, 7, 3L, true, null);
+
+        assertThat(passTokenService.verify(token).outcome).isEqualTo(PassTokenService.Outcome.BAD_SIGNATURE);
+    }
+
+    @Test
+    void malformedTokensAreRejected() {
+        String token = passTokenService.issue(42L, 7, 3L, true, null);
+
+        assertThat(passTokenService.verify(null).outcome).isEqualTo(PassTokenService.Outcome.MALFORMED);
+        assertThat(passTokenService.verify(token.substring(1)).outcome).isEqualTo(PassTokenService.Outcome.MALFORMED);
+        assertThat(passTokenService.verify("*" + token.substring(1)).outcome).isEqualTo(PassTokenService.Outcome.MALFORMED);
+    }
+
+    @Test
+    void tokenPastItsValidityIsExpired() {
+        PassTokenService expiring = new PassTokenService(SECRET, -1);
+
+        String token = expiring.issue(42L, 7, 3L, true, null);
+
+        assertThat(passTokenService.verify(token).outcome).isEqualTo(PassTokenService.Outcome.EXPIRED);
+    }
+
+    @Test
+    void revokedVersionsAreRejectedAndNewerOnesAccepted() {
+        String old = passTokenService.issue(42L, 7, 3L, true, null);
+
+        // Outside a transaction the revocation applies at once
+        passTokenService.revoke(42L, 3L);
+
+        assertThat(passTokenService.verify(old).outcome).isEqualTo(PassTokenService.Outcome.REVOKED);
+        assertThat(passTokenService.verify(passTokenService.issue(42L, 7, 4L, true, null)).outcome)
+            .isEqualTo(PassTokenService.Outcome.VALID);
+        assertThat(passTokenService.verify(passTokenService.issue(43L, 7, 3L, true, null)).outcome)
+            .isEqualTo(PassTokenService.Outcome.VALID);
+    }
+
+    @Test
+    void revocationNeverMovesBackwards() {
+        passTokenService.revoke(42L, 5L);
+        passTokenService.revoke(42L, 2L);
+
+        assertThat(passTokenService.verify(passTokenService.issue(42L, 7, 4L, true, null)).outcome)
+            .isEqualTo(PassTokenService.Outcome.REVOKED);
+    }
+
+    @Test
+    void tokenOfAnInactivePassIsInactive() {
+        String token = passTokenService.issue(42L, 7, 3L, false, null);
+
+        assertThat(passTokenService.verify(token).outcome).isEqualTo(PassTokenService.Outcome.INACTIVE);
+    }
+
+    @Test
+    void missingOrShortSecretFailsStartup() {
+        assertThatThrownBy(() -> new PassTokenService(null, 1)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new PassTokenService("too-short", 1)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void tokenDoesNotOutliveThePassValidity() {
+        PassTokenService longLived = new PassTokenService(SECRET, 30);
+        LocalDate passValidUntil = LocalDate.now().plusDays(3);
+
+        PassTokenService.Verification capped = longLived.verify(longLived.issue(42L, 7, 3L, true, passValidUntil));
+        PassTokenService.Verification uncapped = longLived.verify(longLived.issue(42L, 7, 3L, true, null));
+
+        assertThat(capped.validUntil).isEqualTo(passValidUntil);
+        assertThat(uncapped.validUntil).isEqualTo(LocalDate.now().plusDays(30));
+        assertThat(passTokenService.verify(passTokenService.issue(42L, 7, 3L, true, LocalDate.now().plusDays(5))).validUntil)
+            .isEqualTo(LocalDate.now().plusDays(1));
+    }
+
+    @Test
+    void passTokensUseTheCachedRouteIds() {
+        RouteInstallmentRepository routeInstallmentRepository = mock(RouteInstallmentRepository.class);
+        ReflectionTestUtils.setField(passTokenService, "routeInstallmentRepository", routeInstallmentRepository);
+        when(routeInstallmentRepository.findAll()).thenReturn(List.of(route(7L, "Route A")));
+        passTokenService.refreshRouteIds();
+
+        BusPass busPass = new BusPass();
+        busPass.setId(42L);
+        busPass.setSelectedRoute("Route A");
+        busPass.activate(LocalDate.now(), LocalDate.now().plusMonths(3));
+        passTokenService.issue(busPass);
+        PassTokenService.Verification verification = passTokenService.verify(passTokenService.issue(busPass));
+
+        assertThat(verification.routeId).isEqualTo(7);
+        verify(routeInstallmentRepository, times(1)).findAll();
+        verify(routeInstallmentRepository, never()).findByRouteName(any());
+
+        // A route added later is picked up on the next refresh
+        when(routeInstallmentRepository.findAll()).thenReturn(List.of(route(7L, "Route A"), route(8L, "Route B")));
+        passTokenService.refreshRouteIds();
+        busPass.setSelectedRoute("Route B");
+
+        assertThat(passTokenService.verify(passTokenService.issue(busPass)).routeId).isEqualTo(8);
+    }
+
+    private static RouteInstallment route(long id, String name) {
+        RouteInstallment route = new RouteInstallment();
+        route.setId(id);
+        route.setRouteName(name);
+        return route;
+    }
+}
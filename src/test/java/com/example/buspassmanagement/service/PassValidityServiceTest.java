@@ -0,0 +1,195 @@
+package com.example.buspassmanagement.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.example.buspassmanagement.model.BusPass;
+import com.example.buspassmanagement.model.JobRun;
+import com.example.buspassmanagement.model.RouteInstallment;
+import com.example.buspassmanagement.repository.BusPassRepository;
+import com.example.buspassmanagement.repository.JobRunRepository;
+import com.example.buspassmanagement.repository.RouteInstallmentRepository;
+
+class PassValidityServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private BusPassRepository busPassRepository;
+    private RouteInstallmentRepository routeInstallmentRepository;
+    private ActivePassIndex activePassIndex;
+    private PassTokenService passTokenService;
+    private PassChangeFeedService passChangeFeedService;
+    private JobRunRepository jobRunRepository;
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        busPassRepository = mock(BusPassRepository.class);
+        routeInstallmentRepository = mock(RouteInstallmentRepository.class);
+        activePassIndex = mock(ActivePassIndex.class);
+        passTokenService = mock(PassTokenService.class);
+        passChangeFeedService = mock(PassChangeFeedService.class);
+        jobRunRepository = mock(JobRunRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+    }
+
+    private PassValidityService service(String termEnd) {
+        PassValidityService service = new PassValidityService(transactionManager, termEnd);
+        ReflectionTestUtils.setField(service, "busPassRepository", busPassRepository);
+        ReflectionTestUtils.setField(service, "routeInstallmentRepository", routeInstallmentRepository);
+        ReflectionTestUtils.setField(service, "activePassIndex", activePassIndex);
+        ReflectionTestUtils.setField(service, "passTokenService", passTokenService);
+        ReflectionTestUtils.setField(service, "passChangeFeedService", passChangeFeedService);
+        ReflectionTestUtils.setField(service, "jobRunRepository", jobRunRepository);
+        return service;
+    }
+
+    private static BusPassRepository.PassRoute pass(long id, long version, String route) {
+        return new BusPassRepository.PassRoute() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public long getVersion() {
+                return version;
+            }
+
+            @Override
+            public String getSelectedRoute() {
+                return route;
+            }
+        };
+    }
+
+    private JobRun savedRun() {
+        ArgumentCaptor<JobRun> run = ArgumentCaptor.forClass(JobRun.class);
+        verify(jobRunRepository).save(run.capture());
+        return run.getValue();
+    }
+
+    @Test
+    void sweepExpiresPassesAndRevokesTheirTokens() {
+        when(busPassRepository.lockExpiredChunk(eq(TODAY), anyInt()))
+            .thenReturn(List.of(pass(1L, 4L, "Route A"), pass(2L, 9L, "Route B")));
+
+        long expired = service("").expirePasses(TODAY);
+
+        assertThat(expired).isEqualTo(2);
+        verify(busPassRepository).updateStatus(List.of(1L, 2L), BusPass.PassStatus.EXPIRED);
+        verify(passChangeFeedService).recordAll(List.of(1L, 2L));
+        verify(passTokenService).revoke(1L, 4L);
+        verify(passTokenService).revoke(2L, 9L);
+        verify(activePassIndex).passDeactivated(1L, "Route A");
+        verify(activePassIndex).passDeactivated(2L, "Route B");
+        assertThat(savedRun().getJobName()).isEqualTo(PassValidityService.EXPIRY_JOB_NAME);
+    }
+
+    @Test
+    void sweepContinuesWhileChunksAreFull() {
+        List<BusPassRepository.PassRoute> fullChunk = new ArrayList<>();
+        for (long id = 1; id <= 1000; id++) {
+            fullChunk.add(pass(id, 0L, "Route A"));
+        }
+        when(busPassRepository.lockExpiredChunk(eq(TODAY), anyInt()))
+            .thenReturn(fullChunk, List.of(pass(1001L, 0L, "Route A")));
+
+        long expired = service("").expirePasses(TODAY);
+
+        assertThat(expired).isEqualTo(1001);
+        assertThat(savedRun().getRowsAffected()).isEqualTo(1001);
+    }
+
+    @Test
+    void sweepWithNothingToExpireChangesNothing() {
+        when(busPassRepository.lockExpiredChunk(eq(TODAY), anyInt())).thenReturn(List.of());
+
+        long expired = service("").expirePasses(TODAY);
+
+        assertThat(expired).isZero();
+        verify(busPassRepository, never()).updateStatus(any(), any());
+        verify(passTokenService, never()).revoke(anyLong(), anyLong());
+    }
+
+    @Test
+    void failedSweepIsRecordedOnTheJobRun() {
+        when(busPassRepository.lockExpiredChunk(eq(TODAY), anyInt()))
+            .thenThrow(new IllegalStateException("Lock wait timeout exceeded"));
+
+        long expired = service("").expirePasses(TODAY);
+
+        assertThat(expired).isZero();
+        assertThat(savedRun().getErrorMessage()).isEqualTo("Lock wait timeout exceeded");
+    }
+
+    @Test
+    void renewalReactivatesPassesForTheNewTerm() {
+        LocalDate validUntil = TODAY.plusMonths(6);
+        when(busPassRepository.lockRenewableChunk(eq("Route A"), anyInt()))
+            .thenReturn(List.of(pass(1L, 4L, "Route A")));
+
+        long renewed = service("").renewExpiredPasses("Route A", validUntil);
+
+        assertThat(renewed).isEqualTo(1);
+        verify(busPassRepository).updateStatusAndValidity(List.of(1L), BusPass.PassStatus.ACTIVE, TODAY, validUntil);
+        verify(passChangeFeedService).recordAll(List.of(1L));
+        verify(activePassIndex).passActivated(1L, "Route A");
+        verify(passTokenService, never()).revoke(anyLong(), anyLong());
+        assertThat(savedRun().getJobName()).isEqualTo(PassValidityService.RENEWAL_JOB_NAME);
+    }
+
+    @Test
+    void failedRenewalIsRecordedAndRethrown() {
+        when(busPassRepository.lockRenewableChunk(any(), anyInt()))
+            .thenThrow(new IllegalStateException("Lock wait timeout exceeded"));
+
+        assertThatThrownBy(() -> service("").renewExpiredPasses(null, TODAY.plusMonths(6)))
+            .isInstanceOf(IllegalStateException.class);
+
+        assertThat(savedRun().getErrorMessage()).isEqualTo("Lock wait timeout exceeded");
+    }
+
+    @Test
+    void validityRunsToTheTermEndWhenConfigured() {
+        LocalDate termEnd = TODAY.plusMonths(3);
+
+        assertThat(service(termEnd.toString()).validUntilFor("Route A")).isEqualTo(termEnd);
+    }
+
+    @Test
+    void validityRunsToTheRouteFinalDeadlineOtherwise() {
+        RouteInstallment route = new RouteInstallment();
+        route.setInstallment3Deadline(TODAY.plusMonths(2));
+        when(routeInstallmentRepository.findByRouteName("Route A")).thenReturn(Optional.of(route));
+
+        assertThat(service("").validUntilFor("Route A")).isEqualTo(TODAY.plusMonths(2));
+    }
+
+    @Test
+    void validityEndedInThePastStillCoversToday() {
+        assertThat(service(TODAY.minusDays(10).toString()).validUntilFor("Route A")).isEqualTo(TODAY);
+        assertThat(service("").validUntilFor(null)).isNull();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.buspassmanagement.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.example.buspassmanagement.model.BusPass;
+import com.example.buspassmanagement.model.Payment;
+import com.example.buspassmanagement.model.User;
+import com.example.buspassmanagement.repository.PaymentRepository;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentServiceTest {
+
+    @Mock
+    private BusPassService busPassService;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private PaymentGateway paymentGateway;
+
+    @InjectMocks
+    private PaymentService paymentService;
+
+    private final User user = new User();
+
+    @Test
+    void paymentStatusIsReadFromThePassMask() {
+        BusPass busPass = new BusPass();
+        busPass.setSelectedRoute("Route A");
+        busPass.setPaidInstallmentMask(BusPass.MASK_INSTALLMENT_1 | BusPass.MASK_INSTALLMENT_3);
+        when(busPassService.findByUser(user)).thenReturn(Optional.of(busPass));
+
+        PaymentService.PaymentStatusInfo status = paymentService.getPaymentStatus(user);
+
+        assertThat(status.hasFullPayment).isFalse();
+        assertThat(status.hasInstallment1).isTrue();
+        assertThat(status.hasInstallment2).isFalse();
+        assertThat(status.hasInstallment3).isTrue();
+        assertThat(status.busPassActive).isFalse();
+        verifyNoInteractions(paymentRepository);
+    }
+
+    @Test
+    void paymentStatusWithoutRouteIsEmpty() {
+        when(busPassService.findByUser(user)).thenReturn(Optional.of(new BusPass()));
+
+        PaymentService.PaymentStatusInfo status = paymentService.getPaymentStatus(user);
+
+        assertThat(status.hasFullPayment).isFalse();
+        assertThat(status.hasInstallment1).isFalse();
+        assertThat(status.busPassActive).isFalse();
+    }
+
+    @Test
+    void retriedChargeReusesTheIdempotencyKey() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        ReflectionTestUtils.setField(paymentService, "retryExecutor", new OptimisticRetryExecutor(transactionManager));
+
+        Payment payment = new Payment();
+        payment.setId(7L);
+        payment.setUser(user);
+        payment.setStatus(Payment.PaymentStatus.PENDING);
+        when(paymentRepository.findById(7L)).thenReturn(Optional.of(payment));
+        when(paymentGateway.charge(eq(payment), anyString()))
+            .thenThrow(new OptimisticLockingFailureException("Row was updated by another transaction"))
+            .thenReturn(new PaymentGateway.ChargeResult("ref-1", false));
+
+        boolean settled = paymentService.markAsPaid(7L);
+
+        ArgumentCaptor<String> keys = ArgumentCaptor.forClass(String.class);
+        verify(paymentGateway, times(2)).charge(eq(payment), keys.capture());
+        List<String> usedKeys = keys.getAllValues();
+        assertThat(usedKeys.get(0)).isEqualTo(usedKeys.get(1));
+        assertThat(settled).isFalse();
+        assertThat(payment.getGatewayReference()).isEqualTo("ref-1");
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.buspassmanagement.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.buspassmanagement.repository.JobRunRepository;
+import com.example.buspassmanagement.service.SettlementReconciliationService.MismatchType;
+import com.example.buspassmanagement.service.SettlementReconciliationService.ReconciliationReport;
+
+class SettlementReconciliationServiceTest {
+
+    // Size of the chunks the settlement file is read in
+    private static final int CHUNK = 1 << 20;
+
+    private static final LocalDate DAY = LocalDate.of(2026, 10, 1);
+
+    @TempDir
+    Path tempDir;
+
+    private SettlementReconciliationService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Ledger of PAID payments: id 1 = 100.50, id 2 = 200.00, id 3 = 5.00
+        ResultSet ledger = mock(ResultSet.class);
+        when(ledger.next()).thenReturn(true, true, true, false);
+        when(ledger.getLong("id")).thenReturn(1L, 2L, 3L);
+        when(ledger.getLong("amount_paise")).thenReturn(10050L, 20000L, 500L);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenReturn(ledger);
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+
+        service = new SettlementReconciliationService(dataSource);
+        ReflectionTestUtils.setField(service, "jobRunRepository", mock(JobRunRepository.class));
+        ReflectionTestUtils.setField(service, "reportDir", tempDir.resolve("reports").toString());
+        ReflectionTestUtils.setField(service, "inboxDir", tempDir.toString());
+    }
+
+    @Test
+    void lineSplitAcrossChunksIsParsedWhole() throws Exception {
+        // The chunk boundary falls inside the amount of the first payment line
+        String straddling = "1,ref-1,100.50,2026-10-01\n";
+        Path file = settlementFile(straddling, "1,ref-1,100.".length(),
+            "2,ref-2,199.99,2026-10-01\n" +
+            "9,ref-9,12,2026-10-01\n" +
+            "1,ref-1,100.50,2026-10-01\n" +
+            "not-a-payment\n" +
+            "3,ref-3,5,2026-10-01");
+
+        ReconciliationReport report = service.reconcile(file, DAY, DAY);
+
+        assertThat(report.getLines()).isEqualTo(6);
+        assertThat(report.getMatched()).isEqualTo(2);
+        assertThat(report.getCount(MismatchType.AMOUNT_DIFFERS)).isEqualTo(1);
+        assertThat(report.getCount(MismatchType.MISSING_IN_LEDGER)).isEqualTo(1);
+        assertThat(report.getCount(MismatchType.DUPLICATE)).isEqualTo(1);
+        assertThat(report.getCount(MismatchType.MALFORMED)).isEqualTo(1);
+        assertThat(report.getCount(MismatchType.MISSING_IN_SETTLEMENT)).isZero();
+        assertThat(Files.readAllLines(report.reportFile))
+            .anyMatch(line -> line.startsWith("AMOUNT_DIFFERS,") && line.endsWith(",2,ref-2,200.00,199.99"));
+    }
+
+    @Test
+    void crlfSplitAcrossChunksEndsOneLine() throws Exception {
+        // The chunk ends between the \r and the \n
+        String straddling = "1,ref-1,100.50,2026-10-01\r\n";
+        Path file = settlementFile(straddling, straddling.length() - 1, "3,ref-3,5.00,2026-10-01\r\n");
+
+        ReconciliationReport report = service.reconcile(file, DAY, DAY);
+
+        assertThat(report.getLines()).isEqualTo(2);
+        assertThat(report.getMatched()).isEqualTo(2);
+        assertThat(report.getCount(MismatchType.MALFORMED)).isZero();
+        assertThat(report.getCount(MismatchType.MISSING_IN_SETTLEMENT)).isEqualTo(1);
+    }
+
+    @Test
+    void settlementFilesArePickedFromTheInboxByPlainName() throws Exception {
+        Files.writeString(tempDir.resolve("settlement-2026-10-01.csv"), "1,ref-1,100.50,2026-10-01\n");
+        Files.writeString(tempDir.resolve("settlement-2026-10-02.csv"), "3,ref-3,5,2026-10-02\n");
+        Files.writeString(tempDir.resolve("notes.txt"), "not a settlement file");
+
+        assertThat(service.listSettlementFiles())
+            .containsExactly("settlement-2026-10-02.csv", "settlement-2026-10-01.csv");
+        assertThat(service.findSettlementFile("settlement-2026-10-01.csv"))
+            .isEqualTo(tempDir.resolve("settlement-2026-10-01.csv"));
+        assertThat(service.findSettlementFile("missing.csv")).isNull();
+        assertThat(service.findSettlementFile("notes.txt")).isNull();
+        assertThat(service.findSettlementFile("../settlement-2026-10-01.csv")).isNull();
+        assertThat(service.findSettlementFile("/etc/passwd.csv")).isNull();
+    }
+
+    /**
+     * Header, blank padding lines, then the straddling line placed so the first chunk
+     * ends after splitAt of its bytes, then the remaining lines
+     */
+    private Path settlementFile(String straddling, int splitAt, String rest) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("payment_id,gateway_reference,amount,settled_on\n".getBytes(StandardCharsets.US_ASCII));
+        while (out.size() < CHUNK - splitAt) {
+            out.write('\n');
+        }
+        out.writeBytes(straddling.getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(rest.getBytes(StandardCharsets.US_ASCII));
+
+        Path file = tempDir.resolve("settlement.csv");
+        Files.write(file, out.toByteArray());
+        return file;
+    }
+}